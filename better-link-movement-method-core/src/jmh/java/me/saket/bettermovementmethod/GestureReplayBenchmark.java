@@ -0,0 +1,103 @@
+package me.saket.bettermovementmethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Replays a {@link GestureTrace} of taps and drags over links the way BetterLinkMovementMethod handles touch
+ * events, with and without {@link LinkGestureTracker} skipping the hit-tests of events whose outcome is known.
+ * <p>
+ * Text is modelled as a single line where every character is 1px wide, so x coordinates are character offsets.
+ */
+@State(Scope.Benchmark)
+public class GestureReplayBenchmark {
+
+  // Same values as MotionEvent's actions.
+  private static final int ACTION_DOWN = 0;
+  private static final int ACTION_UP = 1;
+  private static final int ACTION_MOVE = 2;
+
+  private static final int GESTURE_COUNT = 256;
+  private static final float LINE_HEIGHT = 20;
+  private static final float TOUCH_SLOP = 8;
+
+  @Param({ "10", "1000", "100000" })
+  public int linkCount;
+
+  private SpanRangeIndex index;
+  private Object[] links;
+  private GestureTrace trace;
+  private final LinkGestureTracker tracker = new LinkGestureTracker();
+
+  @Setup
+  public void setUp() {
+    int[] starts = new int[linkCount];
+    int[] ends = new int[linkCount];
+    links = new Object[linkCount];
+    for (int i = 0; i < linkCount; i++) {
+      starts[i] = i * 20;
+      ends[i] = i * 20 + 12;
+      links[i] = new Object();
+    }
+    index = new SpanRangeIndex(starts, ends, new int[linkCount]);
+
+    // Each gesture starts on a random link, moves within the touch slop, along the link, onto the text after
+    // it and back before lifting.
+    Random random = new Random(42);
+    GestureTrace.Builder builder = new GestureTrace.Builder();
+    long time = 0;
+    for (int i = 0; i < GESTURE_COUNT; i++) {
+      int linkStart = random.nextInt(linkCount) * 20;
+      float y = LINE_HEIGHT / 2;
+      builder.add(ACTION_DOWN, linkStart + 1, y, time += 100);
+      builder.add(ACTION_MOVE, linkStart + 3, y, time += 16);
+      builder.add(ACTION_MOVE, linkStart + 7, y, time += 16);
+      builder.add(ACTION_MOVE, linkStart + 11, y, time += 16);
+      builder.add(ACTION_MOVE, linkStart + 16, y, time += 16);
+      builder.add(ACTION_MOVE, linkStart + 4, y, time += 16);
+      builder.add(ACTION_UP, linkStart + 4, y, time += 16);
+    }
+    trace = builder.build();
+  }
+
+  @Benchmark
+  public int replayWithTracker() {
+    int hitTestCount = 0;
+    for (int i = 0; i < trace.size(); i++) {
+      int action = trace.action(i);
+      float x = trace.x(i);
+      float y = trace.y(i);
+
+      if (action == ACTION_DOWN) {
+        int found = index.indexAt((int) x);
+        hitTestCount++;
+        tracker.onDown(x, y, found != -1 ? links[found] : null, TOUCH_SLOP);
+        if (found != -1) {
+          tracker.setLinkBounds(index.start(found), 0, index.end(found), LINE_HEIGHT);
+        }
+      } else if (tracker.state() == LinkGestureTracker.STATE_TRACKING_LINK && !tracker.isOverLinkOnDown(x, y)) {
+        index.indexAt((int) x);
+        hitTestCount++;
+      }
+      if (action == ACTION_UP) {
+        tracker.reset();
+      }
+    }
+    return hitTestCount;
+  }
+
+  @Benchmark
+  public int replayWithoutTracker() {
+    int hitTestCount = 0;
+    for (int i = 0; i < trace.size(); i++) {
+      index.indexAt((int) trace.x(i));
+      hitTestCount++;
+    }
+    return hitTestCount;
+  }
+}
@@ -0,0 +1,59 @@
+package me.saket.bettermovementmethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Resolving a touched offset to a link using {@link SpanRangeIndex}, and building the index when a text's links
+ * change.
+ */
+@State(Scope.Benchmark)
+public class HitTestBenchmark {
+
+  private static final int OFFSET_COUNT = 1024;
+
+  @Param({ "10", "1000", "100000" })
+  public int linkCount;
+
+  private int[] starts;
+  private int[] ends;
+  private int[] priorities;
+  private SpanRangeIndex index;
+  private int[] offsets;
+  private int offsetCursor;
+
+  @Setup
+  public void setUp() {
+    starts = new int[linkCount];
+    ends = new int[linkCount];
+    priorities = new int[linkCount];
+    for (int i = 0; i < linkCount; i++) {
+      starts[i] = i * 20;
+      ends[i] = i * 20 + 12;
+    }
+    index = new SpanRangeIndex(starts, ends, priorities);
+
+    // Touches land on links and on the text between them.
+    Random random = new Random(42);
+    offsets = new int[OFFSET_COUNT];
+    for (int i = 0; i < OFFSET_COUNT; i++) {
+      offsets[i] = random.nextInt(linkCount * 20);
+    }
+  }
+
+  @Benchmark
+  public int indexAt() {
+    offsetCursor = (offsetCursor + 1) & (OFFSET_COUNT - 1);
+    return index.indexAt(offsets[offsetCursor]);
+  }
+
+  @Benchmark
+  public SpanRangeIndex buildIndex() {
+    return new SpanRangeIndex(starts, ends, priorities);
+  }
+}
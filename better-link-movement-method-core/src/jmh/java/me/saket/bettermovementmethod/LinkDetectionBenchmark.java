@@ -0,0 +1,63 @@
+package me.saket.bettermovementmethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Detecting links in texts of various sizes using {@link FastLinkDetector}, with and without a
+ * {@link LinkDetectionCache} hit.
+ */
+@State(Scope.Benchmark)
+public class LinkDetectionBenchmark {
+
+  @Param({ "10", "1000", "100000" })
+  public int linkCount;
+
+  private final FastLinkDetector detector = new FastLinkDetector();
+  private String text;
+
+  @Setup
+  public void setUp() {
+    // A mix of link types separated by plain words, like a chat log.
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < linkCount; i++) {
+      switch (i % 3) {
+        case 0:
+          builder.append("Read https://saket.me/post/").append(i).append(" later. ");
+          break;
+        case 1:
+          builder.append("Mail user").append(i).append("@example.com for details. ");
+          break;
+        default:
+          builder.append("Call +1 650 555 ").append(1000 + i % 9000).append(" today. ");
+          break;
+      }
+    }
+    text = builder.toString();
+
+    LinkDetectionCache cache = LinkDetectionCache.getInstance();
+    cache.setMaxSizeBytes(Integer.MAX_VALUE);
+    cache.getOrDetect(text, LinkDetector.ALL, detector);
+  }
+
+  @TearDown
+  public void tearDown() {
+    LinkDetectionCache cache = LinkDetectionCache.getInstance();
+    cache.setMaxSizeBytes(0);
+    cache.clear();
+  }
+
+  @Benchmark
+  public LinkRanges detect() {
+    return detector.detect(text, LinkDetector.ALL);
+  }
+
+  @Benchmark
+  public LinkRanges detectWithCacheHit() {
+    return LinkDetectionCache.getInstance().getOrDetect(text, LinkDetector.ALL, detector);
+  }
+}
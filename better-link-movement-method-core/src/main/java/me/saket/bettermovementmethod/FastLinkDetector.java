@@ -0,0 +1,420 @@
+package me.saket.bettermovementmethod;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A {@link LinkDetector} that finds web URLs, email addresses and phone numbers in a single linear pass over
+ * the text without using regular expressions. It's written in plain Java so that it can be tested and
+ * benchmarked on the JVM.
+ * <p>
+ * The text is split into whitespace-separated tokens and each token is classified by looking at its characters
+ * once. This is less thorough than Android's Linkify:
+ * <ul>
+ * <li>URLs must either start with a scheme or "www.", or consist of a domain name ending in a common generic
+ * top-level domain or a country code. Country codes that are also common file extensions, like ".md" and ".py",
+ * are only detected with a scheme or "www.".</li>
+ * <li>Phone numbers are 7 to 15 digits. Digits that are separated by spaces are only detected if the number
+ * starts with a "+" or an area code in parentheses, e.g., "+1 650 555 0123" and "(650) 555 0123". Otherwise,
+ * they must be a single run of digits or at least 3 groups separated by dashes, e.g., "650-555-0123". Digits
+ * separated by dots are not phone numbers, to avoid matching IP addresses and version numbers.</li>
+ * <li>{@link #MAP_ADDRESSES} are not supported and are ignored.</li>
+ * </ul>
+ */
+public final class FastLinkDetector implements LinkDetector {
+
+  private static final String[] URL_SCHEMES = { "http://", "https://", "rtsp://" };
+  private static final int MIN_PHONE_DIGITS = 7;
+  private static final int MAX_PHONE_DIGITS = 15;
+
+  private static final Set<String> TOP_LEVEL_DOMAINS = new HashSet<>(Arrays.asList(
+      // Generic.
+      "com", "net", "org", "edu", "gov", "mil", "int", "info", "biz", "name", "pro", "mobi", "aero", "coop", "museum",
+      "jobs", "travel", "asia", "cat", "tel", "app", "dev", "blog", "shop", "store", "online", "site", "tech", "xyz",
+      "club", "top", "news", "cloud", "page", "live", "design", "space", "website", "wiki", "media", "email",
+      "today", "world", "network", "digital", "studio", "agency", "company", "social", "video", "art",
+      // Country codes.
+      "ac", "ad", "ae", "af", "ag", "ai", "al", "am", "ao", "aq", "ar", "as", "at", "au", "aw", "ax", "az", "ba",
+      "bb", "bd", "be", "bf", "bg", "bh", "bi", "bj", "bm", "bn", "bo", "br", "bs", "bt", "bw", "by", "bz", "ca",
+      "cc", "cd", "cf", "cg", "ch", "ci", "ck", "cl", "cm", "cn", "co", "cr", "cu", "cv", "cw", "cx", "cy", "cz",
+      "de", "dj", "dk", "dm", "do", "dz", "ec", "ee", "eg", "er", "es", "et", "eu", "fi", "fj", "fk", "fm", "fo",
+      "fr", "ga", "gd", "ge", "gf", "gg", "gh", "gi", "gl", "gm", "gn", "gp", "gq", "gr", "gs", "gt", "gu", "gw",
+      "gy", "hk", "hm", "hn", "hr", "ht", "hu", "id", "ie", "il", "im", "in", "io", "iq", "ir", "is", "it", "je",
+      "jm", "jo", "jp", "ke", "kg", "kh", "ki", "km", "kn", "kp", "kr", "kw", "ky", "kz", "la", "lb", "lc", "li",
+      "lk", "lr", "ls", "lt", "lu", "lv", "ly", "ma", "mc", "md", "me", "mg", "mh", "mk", "ml", "mm", "mn", "mo",
+      "mp", "mq", "mr", "ms", "mt", "mu", "mv", "mw", "mx", "my", "mz", "na", "nc", "ne", "nf", "ng", "ni", "nl",
+      "no", "np", "nr", "nu", "nz", "om", "pa", "pe", "pf", "pg", "ph", "pk", "pl", "pm", "pn", "pr", "ps", "pt",
+      "pw", "py", "qa", "re", "ro", "rs", "ru", "rw", "sa", "sb", "sc", "sd", "se", "sg", "sh", "si", "sk", "sl",
+      "sm", "sn", "so", "sr", "ss", "st", "sv", "sx", "sy", "sz", "tc", "td", "tf", "tg", "th", "tj", "tk", "tl",
+      "tm", "tn", "to", "tr", "tt", "tv", "tw", "tz", "ua", "ug", "uk", "us", "uy", "uz", "va", "vc", "ve", "vg",
+      "vi", "vn", "vu", "wf", "ws", "ye", "yt", "za", "zm", "zw"));
+
+  // Country codes that are more likely to be file names than domains without a scheme or "www.", e.g., "readme.md".
+  private static final Set<String> FILE_EXTENSION_TOP_LEVEL_DOMAINS = new HashSet<>(Arrays.asList(
+      "cc", "md", "mk", "ml", "mm", "pl", "pm", "ps", "py", "rs", "sh", "so"));
+
+  @Override
+  public LinkRanges detect(CharSequence text, int linkifyMask) {
+    return new Scanner(text.toString().toCharArray(), linkifyMask).scan();
+  }
+
+  private static final class Scanner {
+    private final char[] chars;
+    private final boolean detectUrls;
+    private final boolean detectEmails;
+    private final boolean detectPhones;
+    private final LinkRanges.Builder links = new LinkRanges.Builder();
+
+    // Phone numbers can span multiple tokens, e.g., "+1 650 555 0123".
+    private int phoneStart = -1;
+    private int phoneEnd;
+    private int phoneDigitCount;
+    private int phoneOpenParenCount;
+    private int phoneDigitGroupCount;
+    private int phoneLastDigitGroupLength;
+    private boolean isInPhoneDigitGroup;
+    // Whether the number starts with a "+" or has an area code in parentheses, which lets it span multiple tokens.
+    private boolean phoneHasPrefix;
+    private boolean phoneCanContinue;
+    private final StringBuilder phoneUrl = new StringBuilder();
+
+    Scanner(char[] chars, int linkifyMask) {
+      this.chars = chars;
+      this.detectUrls = (linkifyMask & WEB_URLS) != 0;
+      this.detectEmails = (linkifyMask & EMAIL_ADDRESSES) != 0;
+      this.detectPhones = (linkifyMask & PHONE_NUMBERS) != 0;
+    }
+
+    LinkRanges scan() {
+      int i = 0;
+      while (i < chars.length) {
+        if (Character.isWhitespace(chars[i])) {
+          i++;
+          continue;
+        }
+
+        int tokenStart = i;
+        while (i < chars.length && !Character.isWhitespace(chars[i])) {
+          i++;
+        }
+        onToken(tokenStart, i);
+      }
+      flushPhoneNumber();
+      return links.build();
+    }
+
+    private void onToken(int tokenStart, int tokenEnd) {
+      // Sentence punctuation is never a part of links.
+      int end = tokenEnd;
+      while (end > tokenStart && isSentencePunctuation(chars[end - 1])) {
+        end--;
+      }
+
+      if (detectPhones && isPhoneNumberPart(tokenStart, end)) {
+        // Continue the ongoing phone number if this token follows it after a single space.
+        boolean continuesPhoneNumber = phoneStart != -1 && phoneCanContinue && tokenStart == phoneEnd + 1;
+        if (!continuesPhoneNumber) {
+          flushPhoneNumber();
+          phoneStart = tokenStart;
+        }
+        int phonePartEnd = appendPhoneNumberPart(tokenStart, end);
+        phoneEnd = phonePartEnd;
+        phoneCanContinue = phonePartEnd == tokenEnd && phoneHasPrefix;
+        return;
+      }
+      flushPhoneNumber();
+
+      int start = tokenStart;
+      while (start < end && isOpeningPunctuation(chars[start])) {
+        start++;
+      }
+      end = trimClosingPunctuation(start, end);
+      while (end > start && isSentencePunctuation(chars[end - 1])) {
+        end--;
+      }
+      if (start == end) {
+        return;
+      }
+
+      int atIndex = indexOf('@', start, end);
+      if (atIndex != -1) {
+        if (detectEmails && isEmailAddress(start, atIndex, end)) {
+          links.add(start, end, "mailto:" + new String(chars, start, end - start), EMAIL_ADDRESSES);
+        }
+      } else if (detectUrls) {
+        detectWebUrl(start, end);
+      }
+    }
+
+    private void detectWebUrl(int start, int end) {
+      for (String scheme : URL_SCHEMES) {
+        if (regionMatchesIgnoreCase(start, end, scheme) && end - start > scheme.length()) {
+          int hostStart = start + scheme.length();
+          if (isHost(hostStart, hostEndIndex(hostStart, end), false)) {
+            links.add(start, end, scheme + new String(chars, hostStart, end - hostStart), WEB_URLS);
+          }
+          return;
+        }
+      }
+
+      int hostEnd = hostEndIndex(start, end);
+      if (isHost(start, hostEnd, true) && (regionMatchesIgnoreCase(start, hostEnd, "www.") || isKnownTopLevelDomain(hostEnd))) {
+        links.add(start, end, "http://" + new String(chars, start, end - start), WEB_URLS);
+      }
+    }
+
+    /**
+     * @param hostEnd End of a host name that ends in an alphabetic top-level domain.
+     */
+    private boolean isKnownTopLevelDomain(int hostEnd) {
+      int tldStart = hostEnd;
+      while (chars[tldStart - 1] != '.') {
+        tldStart--;
+      }
+      for (int i = tldStart; i < hostEnd; i++) {
+        if (chars[i] > 0x7F) {
+          // Internationalized top-level domains aren't listed.
+          return true;
+        }
+      }
+      String tld = new String(chars, tldStart, hostEnd - tldStart).toLowerCase(Locale.US);
+      return TOP_LEVEL_DOMAINS.contains(tld) && !FILE_EXTENSION_TOP_LEVEL_DOMAINS.contains(tld);
+    }
+
+    private boolean isEmailAddress(int start, int atIndex, int end) {
+      if (atIndex == start || indexOf('@', atIndex + 1, end) != -1) {
+        return false;
+      }
+      for (int i = start; i < atIndex; i++) {
+        char c = chars[i];
+        if (!isAsciiLetterOrDigit(c) && c != '.' && c != '_' && c != '%' && c != '+' && c != '-') {
+          return false;
+        }
+      }
+      return isHost(atIndex + 1, end, true) && hostEndIndex(atIndex + 1, end) == end;
+    }
+
+    /**
+     * @param requireTopLevelDomain Whether the host must end in an alphabetic top-level domain. URLs without a
+     *                              scheme are only detected if this is true, to avoid matching "e.g." or "1.5".
+     */
+    private boolean isHost(int start, int end, boolean requireTopLevelDomain) {
+      if (start >= end) {
+        return false;
+      }
+
+      int labelStart = start;
+      int dotCount = 0;
+      for (int i = start; i < end; i++) {
+        char c = chars[i];
+        if (c == '.') {
+          if (i == labelStart) {
+            // Empty label.
+            return false;
+          }
+          dotCount++;
+          labelStart = i + 1;
+        } else if (!isAsciiLetterOrDigit(c) && c != '-' && !(c > 0x7F && Character.isLetterOrDigit(c))) {
+          return false;
+        }
+      }
+
+      if (!requireTopLevelDomain) {
+        return labelStart < end;
+      }
+      if (dotCount == 0 || end - labelStart < 2) {
+        return false;
+      }
+      for (int i = labelStart; i < end; i++) {
+        if (!Character.isLetter(chars[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int hostEndIndex(int hostStart, int end) {
+      for (int i = hostStart; i < end; i++) {
+        char c = chars[i];
+        if (c == '/' || c == '?' || c == '#' || c == ':') {
+          return i;
+        }
+      }
+      return end;
+    }
+
+    private boolean isPhoneNumberPart(int start, int end) {
+      if (start == end) {
+        return false;
+      }
+      boolean hasDigit = false;
+      for (int i = start; i < end; i++) {
+        char c = chars[i];
+        if (c >= '0' && c <= '9') {
+          hasDigit = true;
+        } else if (c == '+') {
+          if (i != start) {
+            return false;
+          }
+        } else if (c != '-' && c != '(' && c != ')') {
+          // Dot-separated digits are more likely IP addresses, version numbers or dates.
+          return false;
+        }
+      }
+      return hasDigit;
+    }
+
+    /**
+     * @return End of the part that was appended. An unbalanced closing parenthesis ends the phone number,
+     * e.g., "(call 650 555 0123)".
+     */
+    private int appendPhoneNumberPart(int start, int end) {
+      isInPhoneDigitGroup = false;
+      for (int i = start; i < end; i++) {
+        char c = chars[i];
+        if (c >= '0' && c <= '9') {
+          if (!isInPhoneDigitGroup) {
+            isInPhoneDigitGroup = true;
+            phoneDigitGroupCount++;
+            phoneLastDigitGroupLength = 0;
+          }
+          phoneLastDigitGroupLength++;
+          phoneUrl.append(c);
+          phoneDigitCount++;
+          continue;
+        }
+
+        isInPhoneDigitGroup = false;
+        if (c == '+' && phoneDigitCount == 0) {
+          phoneUrl.append(c);
+          phoneHasPrefix = true;
+        } else if (c == '(') {
+          phoneOpenParenCount++;
+        } else if (c == ')') {
+          if (phoneOpenParenCount == 0) {
+            return i;
+          }
+          phoneOpenParenCount--;
+          phoneHasPrefix = true;
+        }
+      }
+      return end;
+    }
+
+    private void flushPhoneNumber() {
+      if (phoneStart != -1 && phoneDigitCount >= MIN_PHONE_DIGITS && phoneDigitCount <= MAX_PHONE_DIGITS && isGroupedLikePhoneNumber()) {
+        links.add(phoneStart, phoneEnd, "tel:" + phoneUrl, PHONE_NUMBERS);
+      }
+      phoneStart = -1;
+      phoneDigitCount = 0;
+      phoneOpenParenCount = 0;
+      phoneDigitGroupCount = 0;
+      phoneLastDigitGroupLength = 0;
+      phoneHasPrefix = false;
+      phoneUrl.setLength(0);
+    }
+
+    /**
+     * Rejects numbers like "2020-2021" and "2020-05-17". Numbers with a prefix can be grouped in any way.
+     */
+    private boolean isGroupedLikePhoneNumber() {
+      return phoneHasPrefix || phoneDigitGroupCount == 1 || (phoneDigitGroupCount >= 3 && phoneLastDigitGroupLength >= 3);
+    }
+
+    /**
+     * Closing parentheses and brackets are only a part of a link if they're balanced inside it,
+     * e.g., "https://en.wikipedia.org/wiki/Java_(programming_language)". Opening and closing characters are
+     * counted once upfront so that runs of closing characters are trimmed in linear time.
+     */
+    private int trimClosingPunctuation(int start, int end) {
+      // Number of opening characters minus closing characters, and number of quotes.
+      int parens = 0;
+      int brackets = 0;
+      int angleBrackets = 0;
+      int quotes = 0;
+      int apostrophes = 0;
+      for (int i = start; i < end; i++) {
+        switch (chars[i]) {
+          case '(':
+            parens++;
+            break;
+          case ')':
+            parens--;
+            break;
+          case '[':
+            brackets++;
+            break;
+          case ']':
+            brackets--;
+            break;
+          case '<':
+            angleBrackets++;
+            break;
+          case '>':
+            angleBrackets--;
+            break;
+          case '"':
+            quotes++;
+            break;
+          case '\'':
+            apostrophes++;
+            break;
+        }
+      }
+
+      while (end > start) {
+        char c = chars[end - 1];
+        if (c == ')' && parens < 0) {
+          parens++;
+        } else if (c == ']' && brackets < 0) {
+          brackets++;
+        } else if (c == '>' && angleBrackets < 0) {
+          angleBrackets++;
+        } else if (c == '"' && quotes == 1) {
+          quotes--;
+        } else if (c == '\'' && apostrophes == 1) {
+          apostrophes--;
+        } else {
+          break;
+        }
+        end--;
+      }
+      return end;
+    }
+
+    private int indexOf(char c, int start, int end) {
+      for (int i = start; i < end; i++) {
+        if (chars[i] == c) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private boolean regionMatchesIgnoreCase(int start, int end, String prefix) {
+      if (end - start < prefix.length()) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length(); i++) {
+        if (Character.toLowerCase(chars[start + i]) != prefix.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static boolean isAsciiLetterOrDigit(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+  }
+
+  private static boolean isSentencePunctuation(char c) {
+    return c == '.' || c == ',' || c == ';' || c == ':' || c == '!' || c == '?';
+  }
+
+  private static boolean isOpeningPunctuation(char c) {
+    return c == '(' || c == '[' || c == '<' || c == '"' || c == '\'';
+  }
+}
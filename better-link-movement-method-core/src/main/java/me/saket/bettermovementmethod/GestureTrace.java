@@ -0,0 +1,165 @@
+package me.saket.bettermovementmethod;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A recorded sequence of touch events, stored as parallel arrays. Can be written to and read from a compact
+ * binary format so that touch traces captured on devices can be replayed later.
+ * <p>
+ * Format (big-endian): a 4-byte magic number, a 1-byte version and the event count as a varint, followed by
+ * each event's action (1 byte), x and y (4-byte floats) and the time since the previous event in milliseconds
+ * (varint).
+ */
+public final class GestureTrace {
+
+  private static final int MAGIC = 0x424c4754; // "BLGT"
+  private static final int VERSION = 1;
+
+  private final int[] actions;
+  private final float[] xs;
+  private final float[] ys;
+  private final long[] eventTimes;
+
+  private GestureTrace(int[] actions, float[] xs, float[] ys, long[] eventTimes) {
+    this.actions = actions;
+    this.xs = xs;
+    this.ys = ys;
+    this.eventTimes = eventTimes;
+  }
+
+  public int size() {
+    return actions.length;
+  }
+
+  /**
+   * @return The event's action, using the same values as MotionEvent's actions.
+   */
+  public int action(int index) {
+    return actions[index];
+  }
+
+  public float x(int index) {
+    return xs[index];
+  }
+
+  public float y(int index) {
+    return ys[index];
+  }
+
+  /**
+   * @return Time of the event in milliseconds, relative to the first event of this trace.
+   */
+  public long eventTime(int index) {
+    return eventTimes[index];
+  }
+
+  public void writeTo(OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    writeVarint(out, size());
+    for (int i = 0; i < size(); i++) {
+      out.writeByte(actions[i]);
+      out.writeFloat(xs[i]);
+      out.writeFloat(ys[i]);
+      writeVarint(out, i == 0 ? 0 : eventTimes[i] - eventTimes[i - 1]);
+    }
+    out.flush();
+  }
+
+  public static GestureTrace readFrom(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(inputStream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a gesture trace");
+    }
+    int version = in.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported gesture trace version: " + version);
+    }
+
+    long count = readVarint(in);
+    if (count > Integer.MAX_VALUE) {
+      throw new IOException("Invalid event count: " + count);
+    }
+    Builder builder = new Builder();
+    long eventTime = 0;
+    for (int i = 0; i < count; i++) {
+      int action = in.readUnsignedByte();
+      float x = in.readFloat();
+      float y = in.readFloat();
+      eventTime += readVarint(in);
+      builder.add(action, x, y, eventTime);
+    }
+    return builder.build();
+  }
+
+  private static void writeVarint(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarint(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  /**
+   * Collects events in the order they occurred.
+   */
+  public static final class Builder {
+    private int[] actions = new int[16];
+    private float[] xs = new float[16];
+    private float[] ys = new float[16];
+    private long[] eventTimes = new long[16];
+    private long firstEventTime;
+    private int size;
+
+    /**
+     * @param eventTime Time of the event in milliseconds. Events are stored relative to the first event.
+     *                  Must not go backwards.
+     */
+    public Builder add(int action, float x, float y, long eventTime) {
+      if (size == 0) {
+        firstEventTime = eventTime;
+      } else if (eventTime - firstEventTime < eventTimes[size - 1]) {
+        throw new IllegalArgumentException("Event times must not go backwards");
+      }
+      if (size == actions.length) {
+        int newCapacity = size * 2;
+        actions = Arrays.copyOf(actions, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        eventTimes = Arrays.copyOf(eventTimes, newCapacity);
+      }
+      actions[size] = action;
+      xs[size] = x;
+      ys[size] = y;
+      eventTimes[size] = eventTime - firstEventTime;
+      size++;
+      return this;
+    }
+
+    public GestureTrace build() {
+      return new GestureTrace(
+          Arrays.copyOf(actions, size),
+          Arrays.copyOf(xs, size),
+          Arrays.copyOf(ys, size),
+          Arrays.copyOf(eventTimes, size));
+    }
+  }
+}
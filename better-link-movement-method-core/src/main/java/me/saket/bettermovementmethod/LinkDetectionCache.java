@@ -0,0 +1,198 @@
+package me.saket.bettermovementmethod;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process-wide LRU cache of links detected in texts, keyed by the text's content and the linkify mask. Useful
+ * for lists where the same texts are bound to recycled TextViews repeatedly, because each bind otherwise has to
+ * run the detection again.
+ * <p>
+ * The cache is disabled by default. Enable it by giving it a size budget using {@link #setMaxSizeBytes(int)}.
+ */
+public final class LinkDetectionCache {
+
+  private static final LinkDetectionCache INSTANCE = new LinkDetectionCache();
+
+  private final LinkedHashMap<Key, LinkRanges> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private int maxSizeBytes;
+  private int sizeBytes;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  public static LinkDetectionCache getInstance() {
+    return INSTANCE;
+  }
+
+  private LinkDetectionCache() {
+  }
+
+  /**
+   * Set the maximum (estimated) memory this cache may retain. Least recently used entries are evicted when this
+   * budget is exceeded. Setting it to 0 disables the cache.
+   */
+  public synchronized void setMaxSizeBytes(int maxSizeBytes) {
+    if (maxSizeBytes < 0) {
+      throw new IllegalArgumentException("maxSizeBytes must not be negative: " + maxSizeBytes);
+    }
+    this.maxSizeBytes = maxSizeBytes;
+    trimToSize();
+  }
+
+  public synchronized int maxSizeBytes() {
+    return maxSizeBytes;
+  }
+
+  /**
+   * Estimated memory currently retained by this cache.
+   */
+  public synchronized int sizeBytes() {
+    return sizeBytes;
+  }
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Remove all entries. Does not reset the hit, miss and eviction counts.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    sizeBytes = 0;
+  }
+
+  public synchronized boolean isEnabled() {
+    return maxSizeBytes > 0;
+  }
+
+  /**
+   * Returns cached links for <var>text</var> or detects them using <var>detector</var> if they aren't cached yet.
+   * Entries aren't keyed by their detector, so the cache must be cleared when switching detectors.
+   */
+  public LinkRanges getOrDetect(CharSequence text, int linkifyMask, LinkDetector detector) {
+    Key key = new Key(text, linkifyMask);
+    synchronized (this) {
+      LinkRanges cached = entries.get(key);
+      if (cached != null) {
+        hitCount++;
+        return cached;
+      }
+      missCount++;
+    }
+
+    // The caller's text may be mutable, so the cached key retains an immutable copy of it.
+    Key retainedKey = key.retain();
+    // Detect outside the lock so that other threads aren't blocked on this.
+    LinkRanges detected = detector.detect(text, linkifyMask);
+
+    synchronized (this) {
+      LinkRanges previous = entries.remove(retainedKey);
+      if (previous != null) {
+        sizeBytes -= retainedKey.estimateSizeBytes() + previous.estimateSizeBytes();
+      }
+      entries.put(retainedKey, detected);
+      sizeBytes += retainedKey.estimateSizeBytes() + detected.estimateSizeBytes();
+      trimToSize();
+    }
+    return detected;
+  }
+
+  private void trimToSize() {
+    Iterator<Map.Entry<Key, LinkRanges>> iterator = entries.entrySet().iterator();
+    while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+      Map.Entry<Key, LinkRanges> eldest = iterator.next();
+      sizeBytes -= eldest.getKey().estimateSizeBytes() + eldest.getValue().estimateSizeBytes();
+      iterator.remove();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * Identifies a text by its content. The 64-bit hash of the content is only used for bucketing and for
+   * rejecting most mismatches early: equal hashes are confirmed by comparing the texts themselves, because
+   * colliding texts can be crafted on purpose and must not be given each other's links.
+   */
+  private static final class Key {
+    private final CharSequence text;
+    private final long contentHash;
+    private final int linkifyMask;
+
+    Key(CharSequence text, int linkifyMask) {
+      this(text, contentHashOf(text), linkifyMask);
+    }
+
+    private Key(CharSequence text, long contentHash, int linkifyMask) {
+      this.text = text;
+      this.contentHash = contentHash;
+      this.linkifyMask = linkifyMask;
+    }
+
+    private static long contentHashOf(CharSequence text) {
+      // FNV-1a.
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0, length = text.length(); i < length; i++) {
+        hash ^= text.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      return hash;
+    }
+
+    /**
+     * Copy of this key that doesn't refer to the caller's (possibly mutable) text.
+     */
+    Key retain() {
+      return text instanceof String ? this : new Key(text.toString(), contentHash, linkifyMask);
+    }
+
+    /**
+     * Estimated memory retained by this key, including its text.
+     */
+    int estimateSizeBytes() {
+      // Object headers and fields of the Key and its String, plus the String's chars.
+      return 48 + 2 * text.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return contentHash == other.contentHash && linkifyMask == other.linkifyMask && contentEquals(text, other.text);
+    }
+
+    private static boolean contentEquals(CharSequence a, CharSequence b) {
+      int length = a.length();
+      if (length != b.length()) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (a.charAt(i) != b.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (contentHash ^ (contentHash >>> 32));
+      result = 31 * result + linkifyMask;
+      return result;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package me.saket.bettermovementmethod;
+
+/**
+ * Finds links in a text. BetterLinkMovementMethod's linkify methods use {@code LinkifyLinkDetector} by
+ * default, which can be replaced using {@code BetterLinkMovementMethod#setLinkDetector(LinkDetector)}.
+ * <p>
+ * Link types are identified using the same bit values as the masks of Android's Linkify.
+ */
+public interface LinkDetector {
+
+  int WEB_URLS = 0x01;
+  int EMAIL_ADDRESSES = 0x02;
+  int PHONE_NUMBERS = 0x04;
+  int MAP_ADDRESSES = 0x08;
+  int ALL = WEB_URLS | EMAIL_ADDRESSES | PHONE_NUMBERS | MAP_ADDRESSES;
+
+  /**
+   * Called on the main thread for synchronous linkification and on a background thread for asynchronous ones.
+   * Implementations must not modify <var>text</var>.
+   *
+   * @param linkifyMask Combination of {@link #WEB_URLS}, {@link #EMAIL_ADDRESSES}, {@link #PHONE_NUMBERS} and
+   *                    {@link #MAP_ADDRESSES}.
+   * @return Links found in <var>text</var>, sorted by their start offsets.
+   */
+  LinkRanges detect(CharSequence text, int linkifyMask);
+}
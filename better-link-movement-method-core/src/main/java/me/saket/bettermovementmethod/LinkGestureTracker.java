@@ -0,0 +1,85 @@
+package me.saket.bettermovementmethod;
+
+/**
+ * State machine of a single touch gesture that lets most touch events be answered without hit-testing the text.
+ * <p>
+ * <ul>
+ * <li>{@link #STATE_IDLE}: No gesture is ongoing.</li>
+ * <li>{@link #STATE_TRACKING_LINK}: The gesture started over a link. Events inside the touch slop of the DOWN
+ * location or inside the link's bounds on the touched line resolve to the same link using arithmetic only.</li>
+ * <li>{@link #STATE_IGNORING}: The gesture did not start over a link and can never result in a click, so the rest
+ * of its events are ignored.</li>
+ * </ul>
+ * All coordinates are in the text layout's coordinate space.
+ */
+public final class LinkGestureTracker {
+
+  public static final int STATE_IDLE = 0;
+  public static final int STATE_TRACKING_LINK = 1;
+  public static final int STATE_IGNORING = 2;
+
+  private int state = STATE_IDLE;
+  private Object linkOnDown;
+  private float downX;
+  private float downY;
+  private float touchSlopSquared;
+  private boolean hasLeftTouchSlop;
+
+  // Bounds of the link on the line touched by ACTION_DOWN.
+  private float linkLeft;
+  private float linkTop;
+  private float linkRight;
+  private float linkBottom;
+
+  /**
+   * @param link Link under the DOWN location or null.
+   */
+  public void onDown(float x, float y, Object link, float touchSlop) {
+    state = link != null ? STATE_TRACKING_LINK : STATE_IGNORING;
+    linkOnDown = link;
+    downX = x;
+    downY = y;
+    touchSlopSquared = touchSlop * touchSlop;
+    hasLeftTouchSlop = false;
+    linkLeft = linkTop = linkRight = linkBottom = 0;
+  }
+
+  public void setLinkBounds(float left, float top, float right, float bottom) {
+    linkLeft = Math.min(left, right);
+    linkRight = Math.max(left, right);
+    linkTop = top;
+    linkBottom = bottom;
+  }
+
+  /**
+   * @return True if (<var>x</var>, <var>y</var>) is known to lie over the link touched by ACTION_DOWN. False if
+   * the location has to be hit-tested.
+   */
+  public boolean isOverLinkOnDown(float x, float y) {
+    if (state != STATE_TRACKING_LINK) {
+      return false;
+    }
+    if (!hasLeftTouchSlop) {
+      float dx = x - downX;
+      float dy = y - downY;
+      if (dx * dx + dy * dy <= touchSlopSquared) {
+        return true;
+      }
+      hasLeftTouchSlop = true;
+    }
+    return x >= linkLeft && x < linkRight && y >= linkTop && y < linkBottom;
+  }
+
+  public int state() {
+    return state;
+  }
+
+  public Object linkOnDown() {
+    return linkOnDown;
+  }
+
+  public void reset() {
+    state = STATE_IDLE;
+    linkOnDown = null;
+  }
+}
@@ -0,0 +1,123 @@
+package me.saket.bettermovementmethod;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link LinkMetricsListener} that aggregates timings into histograms with power-of-two buckets. Recording is
+ * lock-free and allocation-free, so the app can periodically {@link #drain()} it from any thread, e.g., for
+ * uploading to an analytics service.
+ */
+public final class LinkMetricsHistogram implements LinkMetricsListener {
+
+  // Bucket i holds durations in [2^i, 2^(i+1)) nanoseconds. The last bucket also holds anything longer.
+  static final int BUCKET_COUNT = 40;
+
+  private static final int HIT_TEST_COUNT = 0;
+  private static final int HIT_TEST_SPANS_SCANNED = 1;
+  private static final int HIT_TEST_CACHE_HITS = 2;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(PHASE_COUNT * BUCKET_COUNT);
+  private final AtomicLongArray totalNanos = new AtomicLongArray(PHASE_COUNT);
+  private final AtomicLongArray hitTestCounters = new AtomicLongArray(3);
+
+  @Override
+  public void onPhaseMeasured(int phase, long durationNanos) {
+    buckets.incrementAndGet(phase * BUCKET_COUNT + bucketOf(durationNanos));
+    totalNanos.addAndGet(phase, durationNanos);
+  }
+
+  @Override
+  public void onHitTest(int spansScanned, boolean cacheHit) {
+    hitTestCounters.incrementAndGet(HIT_TEST_COUNT);
+    hitTestCounters.addAndGet(HIT_TEST_SPANS_SCANNED, spansScanned);
+    if (cacheHit) {
+      hitTestCounters.incrementAndGet(HIT_TEST_CACHE_HITS);
+    }
+  }
+
+  /**
+   * Returns everything recorded since the last call and resets this histogram. Values recorded concurrently
+   * with this call will either be included in the returned snapshot or in the next one.
+   */
+  public Snapshot drain() {
+    long[] drainedBuckets = new long[buckets.length()];
+    for (int i = 0; i < drainedBuckets.length; i++) {
+      drainedBuckets[i] = buckets.getAndSet(i, 0);
+    }
+    long[] drainedTotals = new long[PHASE_COUNT];
+    for (int i = 0; i < PHASE_COUNT; i++) {
+      drainedTotals[i] = totalNanos.getAndSet(i, 0);
+    }
+    long[] drainedHitTests = new long[hitTestCounters.length()];
+    for (int i = 0; i < drainedHitTests.length; i++) {
+      drainedHitTests[i] = hitTestCounters.getAndSet(i, 0);
+    }
+    return new Snapshot(drainedBuckets, drainedTotals, drainedHitTests);
+  }
+
+  private static int bucketOf(long durationNanos) {
+    if (durationNanos <= 1) {
+      return 0;
+    }
+    return Math.min(63 - Long.numberOfLeadingZeros(durationNanos), BUCKET_COUNT - 1);
+  }
+
+  public static final class Snapshot {
+    private final long[] buckets;
+    private final long[] totalNanos;
+    private final long[] hitTestCounters;
+
+    Snapshot(long[] buckets, long[] totalNanos, long[] hitTestCounters) {
+      this.buckets = buckets;
+      this.totalNanos = totalNanos;
+      this.hitTestCounters = hitTestCounters;
+    }
+
+    /**
+     * @param phase One of {@link LinkMetricsListener}'s PHASE_* constants.
+     */
+    public long count(int phase) {
+      long count = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        count += buckets[phase * BUCKET_COUNT + i];
+      }
+      return count;
+    }
+
+    public long totalNanos(int phase) {
+      return totalNanos[phase];
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return Upper bound of the bucket containing the given percentile of durations, or 0 if nothing was recorded.
+     */
+    public long percentileNanos(int phase, double percentile) {
+      long count = count(phase);
+      if (count == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(count * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        seen += buckets[phase * BUCKET_COUNT + i];
+        if (seen >= rank && seen > 0) {
+          return i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+      }
+      return Long.MAX_VALUE;
+    }
+
+    public long hitTestCount() {
+      return hitTestCounters[HIT_TEST_COUNT];
+    }
+
+    public long spansScannedCount() {
+      return hitTestCounters[HIT_TEST_SPANS_SCANNED];
+    }
+
+    public long hitTestCacheHitCount() {
+      return hitTestCounters[HIT_TEST_CACHE_HITS];
+    }
+  }
+}
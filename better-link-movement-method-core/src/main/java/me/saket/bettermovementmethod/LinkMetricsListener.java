@@ -0,0 +1,44 @@
+package me.saket.bettermovementmethod;
+
+/**
+ * Receives timings of the work done by {@code BetterLinkMovementMethod} while handling touches and clicks.
+ * Register using {@code BetterLinkMovementMethod#setLinkMetricsListener(LinkMetricsListener)}.
+ * {@link LinkMetricsHistogram} can be used for aggregating these values.
+ * <p>
+ * Callbacks are made on the main thread, in the middle of touch handling, with one exception: durations of
+ * {@link #PHASE_CLICK_LISTENER} and {@link #PHASE_LONG_CLICK_LISTENER} are reported from the click listener
+ * executor when async click listeners are used ({@code BetterLinkMovementMethod#setAsyncOnLinkClickListener()}).
+ * Implementations must return quickly, and must be thread-safe if async click listeners are used.
+ * {@link LinkMetricsHistogram} is thread-safe.
+ */
+public interface LinkMetricsListener {
+
+  /** Finding the link under a touch, {@code BetterLinkMovementMethod#findClickableSpanUnderTouch()}. */
+  int PHASE_HIT_TEST = 0;
+  /** Highlighting a link, {@code BetterLinkMovementMethod#highlightUrl()}. */
+  int PHASE_HIGHLIGHT = 1;
+  /** Dispatching a click, {@code BetterLinkMovementMethod#dispatchUrlClick()}, including the click listener. */
+  int PHASE_DISPATCH_CLICK = 2;
+  /** Dispatching a long-click, {@code BetterLinkMovementMethod#dispatchUrlLongClick()}, including the listener. */
+  int PHASE_DISPATCH_LONG_CLICK = 3;
+  /** Time spent inside the app's click listener. Reported from the executor of async click listeners. */
+  int PHASE_CLICK_LISTENER = 4;
+  /** Time spent inside the app's long-click listener. Reported from the executor of async long-click listeners. */
+  int PHASE_LONG_CLICK_LISTENER = 5;
+
+  int PHASE_COUNT = 6;
+
+  /**
+   * @param phase One of the PHASE_* constants.
+   */
+  void onPhaseMeasured(int phase, long durationNanos);
+
+  /**
+   * Called for every touch that landed inside a line of text.
+   *
+   * @param spansScanned Number of spans that were examined for finding the touched span.
+   * @param cacheHit     Whether the touch was resolved using a previously built hit-test index.
+   *                     See {@code BetterLinkMovementMethod#setHitTestIndexEnabled(boolean)}.
+   */
+  void onHitTest(int spansScanned, boolean cacheHit);
+}
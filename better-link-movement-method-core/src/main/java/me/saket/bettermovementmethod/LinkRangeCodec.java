@@ -0,0 +1,146 @@
+package me.saket.bettermovementmethod;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes {@link LinkRanges} into a compact binary format and back, so that links detected once (for example,
+ * by a server) can be stored or shipped along with their text and applied without detecting them again.
+ * <p>
+ * Format: a 1-byte version and the link count as a varint, followed by each link's start offset relative to the
+ * previous link's start, its length and its type as varints, and its URL. A URL is written as a varint that's
+ * either 0, followed by its UTF-8 length as a varint and its bytes, or the 1-based index of a previously written
+ * distinct URL, so repeated URLs are only stored once.
+ */
+public final class LinkRangeCodec {
+
+  private static final int VERSION = 1;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private LinkRangeCodec() {
+  }
+
+  public static byte[] encode(LinkRanges links) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(16 + links.size() * 8);
+    out.write(VERSION);
+    writeVarint(out, links.size());
+
+    Map<String, Integer> urlIndices = new HashMap<>();
+    int previousStart = 0;
+    for (int i = 0; i < links.size(); i++) {
+      int start = links.start(i);
+      if (start < previousStart || links.end(i) < start) {
+        throw new IllegalArgumentException("Links must be sorted by their start offsets and have valid ranges");
+      }
+      writeVarint(out, start - previousStart);
+      writeVarint(out, links.end(i) - start);
+      writeVarint(out, links.type(i));
+      previousStart = start;
+
+      String url = links.url(i);
+      Integer urlIndex = urlIndices.get(url);
+      if (urlIndex != null) {
+        writeVarint(out, urlIndex + 1);
+      } else {
+        urlIndices.put(url, urlIndices.size());
+        byte[] urlBytes = url.getBytes(UTF_8);
+        writeVarint(out, 0);
+        writeVarint(out, urlBytes.length);
+        out.write(urlBytes, 0, urlBytes.length);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @throws IllegalArgumentException If <var>encoded</var> is malformed or was written by an unsupported version.
+   */
+  public static LinkRanges decode(byte[] encoded) {
+    Reader in = new Reader(encoded);
+    int version = in.readByte();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported link ranges version: " + version);
+    }
+
+    int count = in.readVarint();
+    LinkRanges.Builder builder = new LinkRanges.Builder();
+    List<String> urls = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      // Varints of 5 bytes can decode to negative values, which would unsort the links.
+      int startDelta = in.readVarint();
+      int length = in.readVarint();
+      int type = in.readVarint();
+      if (startDelta < 0 || length < 0) {
+        throw new IllegalArgumentException("Malformed link ranges: negative offset");
+      }
+      start += startDelta;
+      int end = start + length;
+      if (start < 0 || end < start) {
+        throw new IllegalArgumentException("Malformed link ranges: offset overflow");
+      }
+
+      int urlReference = in.readVarint();
+      String url;
+      if (urlReference == 0) {
+        url = in.readString(in.readVarint());
+        urls.add(url);
+      } else if (urlReference <= urls.size()) {
+        url = urls.get(urlReference - 1);
+      } else {
+        throw new IllegalArgumentException("Malformed link ranges: invalid URL reference " + urlReference);
+      }
+      builder.add(start, end, url, type);
+    }
+    return builder.build();
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static final class Reader {
+    private final byte[] bytes;
+    private int position;
+
+    Reader(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    int readByte() {
+      if (position >= bytes.length) {
+        throw new IllegalArgumentException("Malformed link ranges: unexpected end of data");
+      }
+      return bytes[position++] & 0xFF;
+    }
+
+    int readVarint() {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed link ranges: varint is too long");
+    }
+
+    String readString(int length) {
+      if (length < 0 || length > bytes.length - position) {
+        throw new IllegalArgumentException("Malformed link ranges: unexpected end of data");
+      }
+      String string = new String(bytes, position, length, UTF_8);
+      position += length;
+      return string;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package me.saket.bettermovementmethod;
+
+import java.util.Arrays;
+
+/**
+ * Locations of links detected in a text, stored as parallel arrays sorted by start offsets.
+ */
+public final class LinkRanges {
+
+  public static final LinkRanges EMPTY = new LinkRanges(new int[0], new int[0], new String[0], new int[0]);
+
+  final int[] starts;
+  final int[] ends;
+  final String[] urls;
+  // One of LinkDetector's type constants for each link, e.g., LinkDetector.WEB_URLS.
+  final int[] types;
+
+  /**
+   * All arrays must be of the same length and sorted by start offsets. They're not copied.
+   */
+  public LinkRanges(int[] starts, int[] ends, String[] urls, int[] types) {
+    if (starts.length != ends.length || starts.length != urls.length || starts.length != types.length) {
+      throw new IllegalArgumentException("Array lengths don't match");
+    }
+    this.starts = starts;
+    this.ends = ends;
+    this.urls = urls;
+    this.types = types;
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  public int start(int index) {
+    return starts[index];
+  }
+
+  public int end(int index) {
+    return ends[index];
+  }
+
+  public String url(int index) {
+    return urls[index];
+  }
+
+  /**
+   * @return One of {@link LinkDetector}'s type constants, e.g., {@link LinkDetector#WEB_URLS}.
+   */
+  public int type(int index) {
+    return types[index];
+  }
+
+  /**
+   * Rough estimate of the memory retained by this object, in bytes.
+   */
+  int estimateSizeBytes() {
+    // Object headers and array references, followed by 3 ints per link.
+    int size = 64 + size() * 12;
+    for (String url : urls) {
+      size += 40 + url.length() * 2;
+    }
+    return size;
+  }
+
+  /**
+   * Collects links in increasing order of their start offsets.
+   */
+  public static final class Builder {
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private String[] urls = new String[8];
+    private int[] types = new int[8];
+    private int size;
+
+    public Builder add(int start, int end, String url, int type) {
+      if (size == starts.length) {
+        int newCapacity = size * 2;
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        urls = Arrays.copyOf(urls, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+      }
+      starts[size] = start;
+      ends[size] = end;
+      urls[size] = url;
+      types[size] = type;
+      size++;
+      return this;
+    }
+
+    public LinkRanges build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      return new LinkRanges(
+          Arrays.copyOf(starts, size),
+          Arrays.copyOf(ends, size),
+          Arrays.copyOf(urls, size),
+          Arrays.copyOf(types, size));
+    }
+  }
+}
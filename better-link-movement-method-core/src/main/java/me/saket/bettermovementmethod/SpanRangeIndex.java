@@ -0,0 +1,144 @@
+package me.saket.bettermovementmethod;
+
+import java.util.Arrays;
+
+/**
+ * Ranges of spans in a text, stored in primitive arrays sorted by their start offsets so that the spans present
+ * at an offset can be found using a binary search. Ranges are numbered in the order of their start offsets;
+ * {@link #order(int)} maps them back to their position in the arrays this index was built from.
+ */
+public final class SpanRangeIndex {
+
+  private final int[] starts;
+  private final int[] ends;
+  // Largest end offset among ranges at indices [0, i]. Lets lookups stop scanning early for overlapping ranges.
+  private final int[] maxEnds;
+  // Position of each range in the arrays passed to the constructor. Used for resolving overlapping ranges
+  // with equal priorities in the same order as Spanned#getSpans().
+  private final int[] orders;
+  // Overlapping ranges with higher priorities are preferred.
+  private final int[] priorities;
+  private int lastScanCount;
+
+  /**
+   * @param starts     Start offsets of the ranges, in any order.
+   * @param ends       End offsets of the ranges.
+   * @param priorities Priorities of the ranges. Among ranges with equal priorities, the one that appears first
+   *                   in these arrays is preferred.
+   */
+  public SpanRangeIndex(int[] starts, int[] ends, int[] priorities) {
+    if (starts.length != ends.length || starts.length != priorities.length) {
+      throw new IllegalArgumentException("Array lengths don't match");
+    }
+    int count = starts.length;
+
+    // Sort by start offsets while keeping the original order for ranges that start at the same offset.
+    long[] sortKeys = new long[count];
+    for (int i = 0; i < count; i++) {
+      sortKeys[i] = ((long) starts[i] << 32) | i;
+    }
+    Arrays.sort(sortKeys);
+
+    this.starts = new int[count];
+    this.ends = new int[count];
+    this.maxEnds = new int[count];
+    this.orders = new int[count];
+    this.priorities = new int[count];
+
+    int maxEnd = -1;
+    for (int i = 0; i < count; i++) {
+      int order = (int) sortKeys[i];
+      this.starts[i] = starts[order];
+      this.ends[i] = ends[order];
+      maxEnd = Math.max(maxEnd, ends[order]);
+      this.maxEnds[i] = maxEnd;
+      this.orders[i] = order;
+      this.priorities[i] = priorities[order];
+    }
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  public int start(int index) {
+    return starts[index];
+  }
+
+  public int end(int index) {
+    return ends[index];
+  }
+
+  /**
+   * @return Position of the range at <var>index</var> in the arrays this index was built from.
+   */
+  public int order(int index) {
+    return orders[index];
+  }
+
+  /**
+   * Finds the range with the highest priority that contains <var>offset</var>, including ranges that end at it.
+   *
+   * @return Index of the range or -1 if there's none.
+   */
+  public int indexAt(int offset) {
+    int found = -1;
+    int scanCount = 0;
+    for (int i = lastIndexStartingAtOrBefore(offset); i >= 0 && maxEnds[i] >= offset; i--) {
+      scanCount++;
+      if (ends[i] >= offset && (found == -1 || ranksHigher(i, found))) {
+        found = i;
+      }
+    }
+    lastScanCount = scanCount;
+    return found;
+  }
+
+  /**
+   * Number of ranges examined by the last call to {@link #indexAt(int)}.
+   */
+  public int lastScanCount() {
+    return lastScanCount;
+  }
+
+  /**
+   * @return True if the range at <var>index</var> is preferred over the range at <var>otherIndex</var> when they overlap.
+   */
+  public boolean ranksHigher(int index, int otherIndex) {
+    if (priorities[index] != priorities[otherIndex]) {
+      return priorities[index] > priorities[otherIndex];
+    }
+    return orders[index] < orders[otherIndex];
+  }
+
+  /**
+   * @return Index of the last range that starts at or before <var>offset</var>, or -1 if there's none.
+   */
+  public int lastIndexStartingAtOrBefore(int offset) {
+    int low = 0;
+    int high = starts.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (starts[mid] <= offset) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * @return Index of the first range that starts at or after <var>offset</var>. Equal to {@link #size()} if there's none.
+   */
+  public int firstIndexStartingAtOrAfter(int offset) {
+    return lastIndexStartingAtOrBefore(offset - 1) + 1;
+  }
+
+  /**
+   * @return Index of the last range that starts before <var>offset</var>, or -1 if there's none.
+   */
+  public int lastIndexStartingBefore(int offset) {
+    return lastIndexStartingAtOrBefore(offset - 1);
+  }
+}
@@ -0,0 +1,129 @@
+package me.saket.bettermovementmethod;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class FastLinkDetectorTest {
+
+  private final FastLinkDetector detector = new FastLinkDetector();
+
+  @Test
+  public void detectsUrlsWithSchemes() {
+    assertLinks("Visit https://saket.me/about.", LinkDetector.WEB_URLS, "https://saket.me/about");
+  }
+
+  @Test
+  public void detectsUrlsWithoutSchemes() {
+    assertLinks("See www.google.com and github.com/saket", LinkDetector.WEB_URLS, "http://www.google.com", "http://github.com/saket");
+  }
+
+  @Test
+  public void keepsBalancedParenthesesInUrls() {
+    assertLinks("(https://en.wikipedia.org/wiki/Java_(programming_language))", LinkDetector.WEB_URLS,
+        "https://en.wikipedia.org/wiki/Java_(programming_language)");
+  }
+
+  @Test
+  public void ignoresAbbreviationsAndNumbers() {
+    assertLinks("Use e.g. version 1.5 or i.e.", LinkDetector.WEB_URLS);
+  }
+
+  @Test
+  public void detectsEmailAddresses() {
+    assertLinks("Mail saket@saket.me, or not@localhost.", LinkDetector.EMAIL_ADDRESSES, "mailto:saket@saket.me");
+  }
+
+  @Test
+  public void detectsPhoneNumbersSpanningMultipleTokens() {
+    assertLinks("Call +1 650 555 0123 today", LinkDetector.PHONE_NUMBERS, "tel:+16505550123");
+  }
+
+  @Test
+  public void ignoresShortNumbers() {
+    assertLinks("Call 555 today", LinkDetector.PHONE_NUMBERS);
+  }
+
+  @Test
+  public void ignoresHostsWithUnknownTopLevelDomains() {
+    assertLinks("Open file.txt, readme.md or setup.py", LinkDetector.WEB_URLS);
+  }
+
+  @Test
+  public void detectsFileExtensionTopLevelDomainsWithSchemeOrWww() {
+    assertLinks("https://example.md and www.example.md", LinkDetector.WEB_URLS, "https://example.md", "http://www.example.md");
+  }
+
+  @Test
+  public void ignoresIpAddressesAndVersionNumbers() {
+    assertLinks("Ping 192.168.1.1 on 1.2.3.4567", LinkDetector.ALL);
+  }
+
+  @Test
+  public void ignoresYearRangesAndDates() {
+    assertLinks("From 2020-2021 until 2020-05-17", LinkDetector.PHONE_NUMBERS);
+  }
+
+  @Test
+  public void ignoresSpaceSeparatedNumbersWithoutPrefix() {
+    assertLinks("100 200 300 400 apples", LinkDetector.PHONE_NUMBERS);
+  }
+
+  @Test
+  public void detectsGroupedPhoneNumbers() {
+    assertLinks("Call 650-555-0123, (650) 555 0123 or 6505550123", LinkDetector.PHONE_NUMBERS,
+        "tel:6505550123", "tel:6505550123", "tel:6505550123");
+  }
+
+  @Test(timeout = 2000)
+  public void trimsRunsOfClosingPunctuationInLinearTime() {
+    StringBuilder text = new StringBuilder("https://saket.me/x");
+    for (int i = 0; i < 1_000_000; i++) {
+      text.append(i % 2 == 0 ? ')' : ']');
+    }
+
+    assertLinks(text.toString(), LinkDetector.ALL, "https://saket.me/x");
+  }
+
+  @Test(timeout = 2000)
+  public void scansPathologicalTextsInLinearTime() {
+    int length = 1_000_000;
+    String[] patterns = { "x)", "(", "\"", "+1 ", "1-", "a.", "@", "www." };
+    for (String pattern : patterns) {
+      StringBuilder text = new StringBuilder(length + pattern.length());
+      while (text.length() < length) {
+        text.append(pattern);
+      }
+      detector.detect(text, LinkDetector.ALL);
+    }
+  }
+
+  @Test
+  public void detectsOnlyRequestedTypes() {
+    String text = "https://saket.me saket@saket.me +1 650 555 0123";
+
+    assertLinks(text, LinkDetector.EMAIL_ADDRESSES, "mailto:saket@saket.me");
+    assertLinks(text, LinkDetector.ALL, "https://saket.me", "mailto:saket@saket.me", "tel:+16505550123");
+  }
+
+  @Test
+  public void reportsLinkOffsetsAndTypes() {
+    LinkRanges links = detector.detect("Go to saket.me now", LinkDetector.ALL);
+
+    assertEquals(1, links.size());
+    assertEquals(6, links.start(0));
+    assertEquals(14, links.end(0));
+    assertEquals(LinkDetector.WEB_URLS, links.type(0));
+  }
+
+  private void assertLinks(String text, int linkifyMask, String... expectedUrls) {
+    LinkRanges links = detector.detect(text, linkifyMask);
+    String[] urls = new String[links.size()];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = links.url(i);
+    }
+    assertEquals(Arrays.asList(expectedUrls), Arrays.asList(urls));
+  }
+}
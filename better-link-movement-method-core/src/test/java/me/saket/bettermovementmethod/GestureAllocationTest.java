@@ -0,0 +1,84 @@
+package me.saket.bettermovementmethod;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the framework-independent part of touch handling, which BetterLinkMovementMethod runs for every
+ * event of a gesture when its hit-test index is enabled, does not allocate.
+ */
+public class GestureAllocationTest {
+
+  private com.sun.management.ThreadMXBean threadBean;
+
+  @Before
+  public void setUp() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    threadBean = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  @Test
+  public void gesturesDoNotAllocate() {
+    int count = 500;
+    int[] starts = new int[count];
+    int[] ends = new int[count];
+    Object[] links = new Object[count];
+    for (int i = 0; i < count; i++) {
+      starts[i] = i * 20;
+      ends[i] = i * 20 + 12;
+      links[i] = new Object();
+    }
+    SpanRangeIndex index = new SpanRangeIndex(starts, ends, new int[count]);
+    LinkGestureTracker tracker = new LinkGestureTracker();
+
+    // Warm up so that class loading and compilation aren't measured.
+    for (int i = 0; i < 10_000; i++) {
+      runGesture(index, links, tracker, i % count);
+    }
+
+    // The runtime can occasionally allocate on this thread by itself, e.g., while compiling code. Allocations made
+    // by gestures would show up in every round.
+    long threadId = Thread.currentThread().getId();
+    long allocatedBytes = Long.MAX_VALUE;
+    for (int round = 0; round < 5; round++) {
+      long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < 1_000; i++) {
+        runGesture(index, links, tracker, i % count);
+      }
+      allocatedBytes = Math.min(allocatedBytes, threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+    }
+
+    assertEquals(0, allocatedBytes);
+  }
+
+  /**
+   * A DOWN on a link, MOVEs within the touch slop, along the link, onto the next link and back, and an UP.
+   */
+  private static void runGesture(SpanRangeIndex index, Object[] links, LinkGestureTracker tracker, int linkIndex) {
+    int offset = index.start(linkIndex) + 1;
+    int found = index.indexAt(offset);
+    tracker.onDown(offset, 10, found != -1 ? links[found] : null, 8);
+    tracker.setLinkBounds(index.start(linkIndex), 0, index.end(linkIndex), 20);
+
+    move(index, tracker, offset + 2);
+    move(index, tracker, offset + 6);
+    move(index, tracker, index.end(linkIndex) + 4);
+    move(index, tracker, offset + 3);
+    tracker.reset();
+  }
+
+  private static void move(SpanRangeIndex index, LinkGestureTracker tracker, float x) {
+    if (!tracker.isOverLinkOnDown(x, 10)) {
+      index.indexAt((int) x);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package me.saket.bettermovementmethod;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GestureTraceTest {
+
+  // MotionEvent's ACTION_DOWN, ACTION_UP and ACTION_MOVE.
+  private static final int ACTION_DOWN = 0;
+  private static final int ACTION_UP = 1;
+  private static final int ACTION_MOVE = 2;
+
+  @Test
+  public void storesEventTimesRelativeToFirstEvent() {
+    GestureTrace trace = new GestureTrace.Builder()
+        .add(ACTION_DOWN, 1f, 2f, 5000)
+        .add(ACTION_MOVE, 3f, 4f, 5016)
+        .add(ACTION_UP, 3f, 4f, 5100)
+        .build();
+
+    assertEquals(3, trace.size());
+    assertEquals(0, trace.eventTime(0));
+    assertEquals(16, trace.eventTime(1));
+    assertEquals(100, trace.eventTime(2));
+    assertEquals(ACTION_MOVE, trace.action(1));
+    assertEquals(3f, trace.x(1), 0f);
+    assertEquals(4f, trace.y(1), 0f);
+  }
+
+  @Test
+  public void roundTripsThroughBinaryFormat() throws IOException {
+    GestureTrace.Builder builder = new GestureTrace.Builder();
+    for (int i = 0; i < 100; i++) {
+      builder.add(i == 0 ? ACTION_DOWN : i == 99 ? ACTION_UP : ACTION_MOVE, i * 1.5f, -i / 3f, 1000 + i * i);
+    }
+    GestureTrace trace = builder.build();
+
+    GestureTrace read = GestureTrace.readFrom(new ByteArrayInputStream(write(trace)));
+
+    assertEquals(trace.size(), read.size());
+    for (int i = 0; i < trace.size(); i++) {
+      assertEquals(trace.action(i), read.action(i));
+      assertEquals(trace.x(i), read.x(i), 0f);
+      assertEquals(trace.y(i), read.y(i), 0f);
+      assertEquals(trace.eventTime(i), read.eventTime(i));
+    }
+  }
+
+  @Test
+  public void readRejectsOtherData() {
+    try {
+      GestureTrace.readFrom(new ByteArrayInputStream(new byte[] { 'G', 'I', 'F', '8', 1, 0 }));
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void readRejectsTruncatedData() throws IOException {
+    byte[] bytes = write(new GestureTrace.Builder().add(ACTION_DOWN, 1f, 2f, 0).add(ACTION_UP, 1f, 2f, 50).build());
+
+    try {
+      GestureTrace.readFrom(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEventTimesGoingBackwards() {
+    new GestureTrace.Builder().add(ACTION_DOWN, 0, 0, 100).add(ACTION_UP, 0, 0, 99);
+  }
+
+  private static byte[] write(GestureTrace trace) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    trace.writeTo(out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,138 @@
+package me.saket.bettermovementmethod;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LinkDetectionCacheTest {
+
+  private final LinkDetectionCache cache = LinkDetectionCache.getInstance();
+  private final CountingDetector detector = new CountingDetector();
+
+  @After
+  public void tearDown() {
+    cache.setMaxSizeBytes(0);
+    cache.clear();
+  }
+
+  @Test
+  public void isDisabledByDefault() {
+    assertFalse(cache.isEnabled());
+  }
+
+  @Test
+  public void detectsOncePerTextAndMask() {
+    cache.setMaxSizeBytes(100_000);
+    long hitCount = cache.hitCount();
+    long missCount = cache.missCount();
+
+    LinkRanges first = cache.getOrDetect("Visit https://saket.me", LinkDetector.ALL, detector);
+    LinkRanges second = cache.getOrDetect(new StringBuilder("Visit https://saket.me"), LinkDetector.ALL, detector);
+    cache.getOrDetect("Visit https://saket.me", LinkDetector.WEB_URLS, detector);
+
+    assertSame(first, second);
+    assertEquals(2, detector.detectCount);
+    assertEquals(1, cache.hitCount() - hitCount);
+    assertEquals(2, cache.missCount() - missCount);
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedEntriesWhenOverBudget() {
+    cache.setMaxSizeBytes(100_000);
+    cache.getOrDetect("a", LinkDetector.ALL, detector);
+    int entrySizeBytes = cache.sizeBytes();
+    cache.clear();
+    cache.setMaxSizeBytes(entrySizeBytes * 2);
+    detector.detectCount = 0;
+    long evictionCount = cache.evictionCount();
+
+    cache.getOrDetect("a", LinkDetector.ALL, detector);
+    cache.getOrDetect("b", LinkDetector.ALL, detector);
+    cache.getOrDetect("a", LinkDetector.ALL, detector);
+    cache.getOrDetect("c", LinkDetector.ALL, detector);
+    assertEquals(1, cache.evictionCount() - evictionCount);
+    assertTrue(cache.sizeBytes() <= cache.maxSizeBytes());
+
+    // "b" was evicted, "a" was not.
+    detector.detectCount = 0;
+    cache.getOrDetect("a", LinkDetector.ALL, detector);
+    assertEquals(0, detector.detectCount);
+    cache.getOrDetect("b", LinkDetector.ALL, detector);
+    assertEquals(1, detector.detectCount);
+  }
+
+  @Test
+  public void textsWithEqualLengthsDoNotShareEntries() {
+    cache.setMaxSizeBytes(100_000);
+
+    LinkRanges first = cache.getOrDetect("Visit https://saket.me", LinkDetector.ALL, detector);
+    LinkRanges second = cache.getOrDetect("Visit https://saket.io", LinkDetector.ALL, detector);
+
+    assertEquals("http://Visit https://saket.io", second.url(0));
+    assertEquals(2, detector.detectCount);
+    assertTrue(first != second);
+  }
+
+  @Test
+  public void retainsACopyOfMutableTexts() {
+    cache.setMaxSizeBytes(100_000);
+    StringBuilder text = new StringBuilder("Visit https://saket.me");
+    cache.getOrDetect(text, LinkDetector.ALL, detector);
+
+    text.setCharAt(text.length() - 1, 'x');
+    cache.getOrDetect("Visit https://saket.me", LinkDetector.ALL, detector);
+
+    assertEquals(1, detector.detectCount);
+  }
+
+  @Test
+  public void sizeIncludesTheRetainedTexts() {
+    cache.setMaxSizeBytes(100_000);
+    cache.getOrDetect("a", LinkDetector.ALL, detector);
+    int shortTextSizeBytes = cache.sizeBytes();
+    cache.clear();
+
+    // The detected links take the same space for both texts.
+    cache.getOrDetect("aaaaaaaaaa", LinkDetector.ALL, new SingleLinkDetector());
+    int longTextSizeBytes = cache.sizeBytes();
+
+    assertTrue(longTextSizeBytes > shortTextSizeBytes);
+  }
+
+  @Test
+  public void disablingTheCacheEvictsEverything() {
+    cache.setMaxSizeBytes(100_000);
+    cache.getOrDetect("a", LinkDetector.ALL, detector);
+
+    cache.setMaxSizeBytes(0);
+
+    assertFalse(cache.isEnabled());
+    assertEquals(0, cache.sizeBytes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNegativeBudget() {
+    cache.setMaxSizeBytes(-1);
+  }
+
+  private static final class SingleLinkDetector implements LinkDetector {
+    @Override
+    public LinkRanges detect(CharSequence text, int linkifyMask) {
+      return new LinkRanges.Builder().add(0, 1, "http://a", WEB_URLS).build();
+    }
+  }
+
+  private static final class CountingDetector implements LinkDetector {
+    int detectCount;
+
+    @Override
+    public LinkRanges detect(CharSequence text, int linkifyMask) {
+      detectCount++;
+      return new LinkRanges.Builder().add(0, text.length(), "http://" + text, WEB_URLS).build();
+    }
+  }
+}
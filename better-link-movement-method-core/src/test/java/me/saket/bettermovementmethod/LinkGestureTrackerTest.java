@@ -0,0 +1,71 @@
+package me.saket.bettermovementmethod;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LinkGestureTrackerTest {
+
+  private final Object link = new Object();
+  private final LinkGestureTracker tracker = new LinkGestureTracker();
+
+  @Test
+  public void downOverLinkStartsTrackingIt() {
+    tracker.onDown(10, 10, link, 8);
+
+    assertEquals(LinkGestureTracker.STATE_TRACKING_LINK, tracker.state());
+    assertSame(link, tracker.linkOnDown());
+  }
+
+  @Test
+  public void downOutsideLinksIgnoresGesture() {
+    tracker.onDown(10, 10, null, 8);
+
+    assertEquals(LinkGestureTracker.STATE_IGNORING, tracker.state());
+    assertFalse(tracker.isOverLinkOnDown(10, 10));
+  }
+
+  @Test
+  public void eventsInsideTouchSlopResolveToLinkOnDown() {
+    tracker.onDown(10, 10, link, 8);
+    tracker.setLinkBounds(0, 0, 20, 20);
+
+    assertTrue(tracker.isOverLinkOnDown(15, 15));
+    // Outside the link's bounds, but still within the touch slop.
+    assertTrue(tracker.isOverLinkOnDown(10, 17));
+  }
+
+  @Test
+  public void eventsOutsideTouchSlopAreCheckedAgainstLinkBounds() {
+    tracker.onDown(10, 10, link, 2);
+    tracker.setLinkBounds(0, 0, 100, 20);
+
+    assertTrue(tracker.isOverLinkOnDown(80, 10));
+    assertFalse(tracker.isOverLinkOnDown(80, 25));
+    // Once the touch slop has been left, returning to the DOWN location's vicinity is only checked against bounds.
+    assertFalse(tracker.isOverLinkOnDown(10, 21));
+  }
+
+  @Test
+  public void linkBoundsAreNormalizedForRightToLeftText() {
+    tracker.onDown(50, 10, link, 0);
+    tracker.setLinkBounds(100, 0, 40, 20);
+
+    assertTrue(tracker.isOverLinkOnDown(60, 10));
+    assertFalse(tracker.isOverLinkOnDown(110, 10));
+  }
+
+  @Test
+  public void resetEndsGesture() {
+    tracker.onDown(10, 10, link, 8);
+    tracker.reset();
+
+    assertEquals(LinkGestureTracker.STATE_IDLE, tracker.state());
+    assertNull(tracker.linkOnDown());
+    assertFalse(tracker.isOverLinkOnDown(10, 10));
+  }
+}
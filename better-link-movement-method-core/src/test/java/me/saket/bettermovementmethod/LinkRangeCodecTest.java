@@ -0,0 +1,87 @@
+package me.saket.bettermovementmethod;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class LinkRangeCodecTest {
+
+  @Test
+  public void roundTripsLinks() {
+    LinkRanges links = new LinkRanges.Builder()
+        .add(0, 18, "https://saket.me", LinkDetector.WEB_URLS)
+        .add(30, 45, "mailto:saket@saket.me", LinkDetector.EMAIL_ADDRESSES)
+        .add(30, 40, "https://saket.me", LinkDetector.WEB_URLS)
+        .add(100000, 100012, "tel:+16505550123", LinkDetector.PHONE_NUMBERS)
+        .add(100020, 100030, "https://\u4f8b\u3048.jp/\u30d1\u30b9", LinkDetector.WEB_URLS)
+        .build();
+
+    LinkRanges decoded = LinkRangeCodec.decode(LinkRangeCodec.encode(links));
+
+    assertEquals(links.size(), decoded.size());
+    for (int i = 0; i < links.size(); i++) {
+      assertEquals(links.start(i), decoded.start(i));
+      assertEquals(links.end(i), decoded.end(i));
+      assertEquals(links.url(i), decoded.url(i));
+      assertEquals(links.type(i), decoded.type(i));
+    }
+    // Repeated URLs are stored once.
+    assertSame(decoded.url(0), decoded.url(2));
+  }
+
+  @Test
+  public void roundTripsEmptyLinks() {
+    assertEquals(0, LinkRangeCodec.decode(LinkRangeCodec.encode(LinkRanges.EMPTY)).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void encodeRejectsUnsortedLinks() {
+    LinkRangeCodec.encode(new LinkRanges.Builder()
+        .add(10, 12, "a", LinkDetector.WEB_URLS)
+        .add(5, 6, "b", LinkDetector.WEB_URLS)
+        .build());
+  }
+
+  @Test
+  public void decodeRejectsTruncatedInput() {
+    byte[] encoded = LinkRangeCodec.encode(new LinkRanges.Builder().add(0, 18, "https://saket.me", LinkDetector.WEB_URLS).build());
+
+    for (int length = 0; length < encoded.length; length++) {
+      try {
+        LinkRangeCodec.decode(Arrays.copyOf(encoded, length));
+        fail("Decoded " + length + " bytes of " + encoded.length);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeRejectsUnsupportedVersion() {
+    LinkRangeCodec.decode(new byte[] { 2, 0 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeRejectsNegativeStartDeltas() {
+    // Version, 2 links: [10, 12) of type 1 with URL "a", and a start delta of -5 encoded as a 5-byte varint.
+    LinkRangeCodec.decode(new byte[] {
+        1, 2,
+        10, 2, 1, 0, 1, 'a',
+        (byte) 0xFB, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 1, 1, 1 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeRejectsNegativeLengths() {
+    // Version, 1 link at offset 10 with a length of -5 encoded as a 5-byte varint.
+    LinkRangeCodec.decode(new byte[] { 1, 1, 10, (byte) 0xFB, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 1, 0, 1, 'a' });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeRejectsInvalidUrlReference() {
+    // Version, 1 link at [0, 1) of type 1 that refers to the 1st URL, which hasn't been written.
+    LinkRangeCodec.decode(new byte[] { 1, 1, 0, 1, 1, 1 });
+  }
+}
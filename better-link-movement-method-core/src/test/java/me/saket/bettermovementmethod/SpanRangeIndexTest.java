@@ -0,0 +1,104 @@
+package me.saket.bettermovementmethod;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpanRangeIndexTest {
+
+  @Test
+  public void sortsRangesByStartOffsets() {
+    SpanRangeIndex index = new SpanRangeIndex(new int[] { 20, 0, 10 }, new int[] { 25, 5, 15 }, new int[3]);
+
+    assertEquals(3, index.size());
+    assertEquals(0, index.start(0));
+    assertEquals(10, index.start(1));
+    assertEquals(20, index.start(2));
+    assertEquals(25, index.end(2));
+    assertEquals(1, index.order(0));
+    assertEquals(2, index.order(1));
+    assertEquals(0, index.order(2));
+  }
+
+  @Test
+  public void findsRangeContainingOffset() {
+    SpanRangeIndex index = new SpanRangeIndex(new int[] { 0, 10, 20 }, new int[] { 5, 15, 25 }, new int[3]);
+
+    assertEquals(0, index.indexAt(0));
+    assertEquals(0, index.indexAt(3));
+    assertEquals(1, index.indexAt(12));
+    assertEquals(2, index.indexAt(25));
+    assertEquals(-1, index.indexAt(7));
+    assertEquals(-1, index.indexAt(30));
+  }
+
+  @Test
+  public void rangesEndingAtOffsetContainIt() {
+    SpanRangeIndex index = new SpanRangeIndex(new int[] { 0 }, new int[] { 5 }, new int[1]);
+
+    assertEquals(0, index.indexAt(5));
+    assertEquals(-1, index.indexAt(6));
+  }
+
+  @Test
+  public void overlappingRangesAreResolvedByPriority() {
+    SpanRangeIndex index = new SpanRangeIndex(new int[] { 0, 2 }, new int[] { 10, 6 }, new int[] { 0, 1 });
+
+    assertEquals(1, index.indexAt(4));
+    assertEquals(0, index.indexAt(8));
+    assertTrue(index.ranksHigher(1, 0));
+    assertFalse(index.ranksHigher(0, 1));
+  }
+
+  @Test
+  public void overlappingRangesWithEqualPrioritiesKeepTheirOriginalOrder() {
+    SpanRangeIndex index = new SpanRangeIndex(new int[] { 2, 0 }, new int[] { 6, 10 }, new int[2]);
+
+    // Index 1 was first in the arrays the index was built from.
+    assertEquals(2, index.start(1));
+    assertEquals(1, index.indexAt(4));
+  }
+
+  @Test
+  public void lookupStopsScanningAtRangesThatEndBeforeOffset() {
+    int count = 1000;
+    int[] starts = new int[count];
+    int[] ends = new int[count];
+    for (int i = 0; i < count; i++) {
+      starts[i] = i * 10;
+      ends[i] = i * 10 + 5;
+    }
+    SpanRangeIndex index = new SpanRangeIndex(starts, ends, new int[count]);
+
+    assertEquals(500, index.indexAt(5002));
+    assertEquals(1, index.lastScanCount());
+  }
+
+  @Test
+  public void findsNeighbouringRanges() {
+    SpanRangeIndex index = new SpanRangeIndex(new int[] { 0, 10, 20 }, new int[] { 5, 15, 25 }, new int[3]);
+
+    assertEquals(1, index.firstIndexStartingAtOrAfter(10));
+    assertEquals(2, index.firstIndexStartingAtOrAfter(11));
+    assertEquals(3, index.firstIndexStartingAtOrAfter(21));
+    assertEquals(0, index.lastIndexStartingBefore(10));
+    assertEquals(-1, index.lastIndexStartingBefore(0));
+    assertEquals(2, index.lastIndexStartingAtOrBefore(20));
+  }
+
+  @Test
+  public void emptyIndexHasNoRanges() {
+    SpanRangeIndex index = new SpanRangeIndex(new int[0], new int[0], new int[0]);
+
+    assertEquals(-1, index.indexAt(0));
+    assertEquals(0, index.firstIndexStartingAtOrAfter(0));
+    assertEquals(-1, index.lastIndexStartingBefore(100));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsArraysOfDifferentLengths() {
+    new SpanRangeIndex(new int[1], new int[2], new int[1]);
+  }
+}
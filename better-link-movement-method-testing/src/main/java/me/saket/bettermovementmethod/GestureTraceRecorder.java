@@ -0,0 +1,39 @@
+package me.saket.bettermovementmethod;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Records touch events received by a View into a {@link GestureTrace}, which can be saved using
+ * {@link GestureTrace#writeTo(java.io.OutputStream)} and replayed later using {@link GestureTraceReplayer}.
+ * Usage: {@code textView.setOnTouchListener(recorder)}. Events are not consumed, so the View's
+ * movement method keeps receiving them.
+ */
+public final class GestureTraceRecorder implements View.OnTouchListener {
+
+  private GestureTrace.Builder builder = new GestureTrace.Builder();
+
+  @Override
+  public boolean onTouch(View view, MotionEvent event) {
+    record(event);
+    return false;
+  }
+
+  public void record(MotionEvent event) {
+    builder.add(event.getActionMasked(), event.getX(), event.getY(), event.getEventTime());
+  }
+
+  /**
+   * @return Events recorded so far.
+   */
+  public GestureTrace trace() {
+    return builder.build();
+  }
+
+  /**
+   * Discard all recorded events.
+   */
+  public void clear() {
+    builder = new GestureTrace.Builder();
+  }
+}
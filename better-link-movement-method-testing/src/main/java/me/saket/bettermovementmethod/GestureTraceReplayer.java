@@ -0,0 +1,272 @@
+package me.saket.bettermovementmethod;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.text.SpanWatcher;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.view.MotionEvent;
+import android.widget.TextView;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Replays a {@link GestureTrace} through {@link BetterLinkMovementMethod#onTouchEvent(TextView, Spannable, MotionEvent)}
+ * against a TextView's current text and layout, and reports how expensive handling each event was. Useful for
+ * comparing changes to the touch handling against a baseline using real touch traces.
+ * <p>
+ * Events are replayed back-to-back on the calling thread, which must be the main thread. Clicks are counted
+ * instead of being dispatched to the app's listeners or the clicked spans, except for span types registered with
+ * their own click listeners. Work that's posted for later, like long-press timers and highlight changes
+ * coalesced to the next frame, only happens if the main thread's Looper gets to run during the replay. A gesture
+ * left unfinished by the trace is cancelled once the replay ends.
+ */
+public final class GestureTraceReplayer {
+
+  private GestureTraceReplayer() {
+  }
+
+  public static Report replay(BetterLinkMovementMethod movementMethod, TextView textView, GestureTrace trace) {
+    if (!(textView.getText() instanceof Spannable)) {
+      throw new IllegalArgumentException("TextView's text must be Spannable");
+    }
+    Spannable text = (Spannable) textView.getText();
+
+    // Obtain all events upfront so that they aren't counted as allocations made by the movement method.
+    MotionEvent[] events = new MotionEvent[trace.size()];
+    long baseTime = SystemClock.uptimeMillis();
+    long downTime = baseTime;
+    for (int i = 0; i < events.length; i++) {
+      long eventTime = baseTime + trace.eventTime(i);
+      if (trace.action(i) == MotionEvent.ACTION_DOWN) {
+        downTime = eventTime;
+      }
+      events[i] = MotionEvent.obtain(downTime, eventTime, trace.action(i), trace.x(i), trace.y(i), 0);
+    }
+
+    GestureState state = GestureState.of(textView);
+    BetterLinkMovementMethod.OnLinkClickListener appClickListener = state.onLinkClickListener;
+    BetterLinkMovementMethod.OnLinkLongClickListener appLongClickListener = state.onLinkLongClickListener;
+    ClickCounter clickCounter = new ClickCounter();
+    state.onLinkClickListener = clickCounter;
+    state.onLinkLongClickListener = clickCounter;
+
+    SpanMutationCounter spanMutationCounter = new SpanMutationCounter();
+    text.setSpan(spanMutationCounter, 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+
+    long[] latencies = new long[events.length];
+    AllocationMeter allocationMeter = new AllocationMeter();
+    try {
+      allocationMeter.start();
+      for (int i = 0; i < events.length; i++) {
+        long startNanos = System.nanoTime();
+        movementMethod.onTouchEvent(textView, text, events[i]);
+        latencies[i] = System.nanoTime() - startNanos;
+      }
+      allocationMeter.stop();
+
+    } finally {
+      text.removeSpan(spanMutationCounter);
+
+      // End any gesture left unfinished by the trace before the app's listeners are restored. Otherwise, its
+      // pending long-press timer would call them later.
+      MotionEvent cancelEvent = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_CANCEL, 0, 0, 0);
+      movementMethod.onTouchEvent(textView, text, cancelEvent);
+      cancelEvent.recycle();
+
+      state.onLinkClickListener = appClickListener;
+      state.onLinkLongClickListener = appLongClickListener;
+      for (MotionEvent event : events) {
+        event.recycle();
+      }
+    }
+
+    Arrays.sort(latencies);
+    return new Report(latencies, allocationMeter.allocationCount, allocationMeter.allocatedBytes, spanMutationCounter.count,
+        clickCounter.clickCount, clickCounter.longClickCount);
+  }
+
+  /**
+   * Measures allocations made on the calling thread. On devices, {@link Debug}'s allocation counting is used. On the
+   * JVM, e.g., under Robolectric where Debug's counting does nothing, the JVM's count of bytes allocated by the
+   * thread is used instead. It's looked up using reflection because java.lang.management isn't part of Android.
+   */
+  private static final class AllocationMeter {
+    private final long threadId = Thread.currentThread().getId();
+    private Object jvmThreadBean;
+    private Method jvmAllocatedBytesMethod;
+    private long jvmStartBytes;
+    private long jvmOverheadBytes;
+
+    // -1 where unavailable.
+    int allocationCount = -1;
+    long allocatedBytes = -1;
+
+    AllocationMeter() {
+      try {
+        Object threadBean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+        Method allocatedBytesMethod = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+        if ((Long) allocatedBytesMethod.invoke(threadBean, threadId) >= 0) {
+          jvmThreadBean = threadBean;
+          jvmAllocatedBytesMethod = allocatedBytesMethod;
+        }
+      } catch (Exception e) {
+        // Not running on a JVM that counts allocations per thread.
+      }
+    }
+
+    @SuppressWarnings("deprecation")
+    void start() {
+      if (jvmThreadBean != null) {
+        // Reading the JVM's count allocates for the reflective call, which is subtracted from the result.
+        long firstRead = readJvmAllocatedBytes();
+        jvmOverheadBytes = readJvmAllocatedBytes() - firstRead;
+        jvmStartBytes = readJvmAllocatedBytes();
+      } else {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+      }
+    }
+
+    @SuppressWarnings("deprecation")
+    void stop() {
+      if (jvmThreadBean != null) {
+        allocatedBytes = Math.max(0, readJvmAllocatedBytes() - jvmStartBytes - jvmOverheadBytes);
+      } else {
+        Debug.stopAllocCounting();
+        allocationCount = Debug.getThreadAllocCount();
+      }
+    }
+
+    private long readJvmAllocatedBytes() {
+      try {
+        return (Long) jvmAllocatedBytesMethod.invoke(jvmThreadBean, threadId);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  public static final class Report {
+    private final long[] sortedLatencies;
+    private final int allocationCount;
+    private final long allocatedBytes;
+    private final int spanMutationCount;
+    private final int clickCount;
+    private final int longClickCount;
+
+    Report(long[] sortedLatencies, int allocationCount, long allocatedBytes, int spanMutationCount, int clickCount, int longClickCount) {
+      this.sortedLatencies = sortedLatencies;
+      this.allocationCount = allocationCount;
+      this.allocatedBytes = allocatedBytes;
+      this.spanMutationCount = spanMutationCount;
+      this.clickCount = clickCount;
+      this.longClickCount = longClickCount;
+    }
+
+    public int eventCount() {
+      return sortedLatencies.length;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return Time taken by onTouchEvent() for the given percentile of events, or 0 if no events were replayed.
+     */
+    public long latencyPercentileNanos(double percentile) {
+      if (sortedLatencies.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(sortedLatencies.length * percentile / 100);
+      return sortedLatencies[Math.max(0, Math.min(rank, sortedLatencies.length) - 1)];
+    }
+
+    /**
+     * Objects allocated on the main thread during the replay, as counted by {@link Debug#getThreadAllocCount()} on
+     * devices. -1 on the JVM, where {@link #allocatedBytes()} is measured instead.
+     */
+    public int allocationCount() {
+      return allocationCount;
+    }
+
+    /**
+     * Bytes allocated on the main thread during the replay, as counted by the JVM, e.g., under Robolectric. -1 on
+     * devices, where {@link #allocationCount()} is measured instead.
+     */
+    public long allocatedBytes() {
+      return allocatedBytes;
+    }
+
+    /**
+     * Number of spans added, removed or changed in the text, including highlight and selection spans.
+     */
+    public int spanMutationCount() {
+      return spanMutationCount;
+    }
+
+    public int clickCount() {
+      return clickCount;
+    }
+
+    public int longClickCount() {
+      return longClickCount;
+    }
+
+    @Override
+    public String toString() {
+      return "Report{" +
+          "events=" + eventCount() +
+          ", p50=" + latencyPercentileNanos(50) + "ns" +
+          ", p90=" + latencyPercentileNanos(90) + "ns" +
+          ", p99=" + latencyPercentileNanos(99) + "ns" +
+          ", allocations=" + allocationCount +
+          ", allocatedBytes=" + allocatedBytes +
+          ", spanMutations=" + spanMutationCount +
+          ", clicks=" + clickCount +
+          ", longClicks=" + longClickCount +
+          '}';
+    }
+  }
+
+  private static final class ClickCounter implements BetterLinkMovementMethod.OnLinkClickListener, BetterLinkMovementMethod.OnLinkLongClickListener {
+    int clickCount;
+    int longClickCount;
+
+    @Override
+    public boolean onClick(TextView textView, String url) {
+      clickCount++;
+      return true;
+    }
+
+    @Override
+    public boolean onLongClick(TextView textView, String url) {
+      longClickCount++;
+      return true;
+    }
+  }
+
+  private static final class SpanMutationCounter implements SpanWatcher {
+    int count;
+
+    @Override
+    public void onSpanAdded(Spannable text, Object what, int start, int end) {
+      if (what != this) {
+        count++;
+      }
+    }
+
+    @Override
+    public void onSpanRemoved(Spannable text, Object what, int start, int end) {
+      if (what != this) {
+        count++;
+      }
+    }
+
+    @Override
+    public void onSpanChanged(Spannable text, Object what, int oldStart, int oldEnd, int newStart, int newEnd) {
+      if (what != this) {
+        count++;
+      }
+    }
+  }
+}
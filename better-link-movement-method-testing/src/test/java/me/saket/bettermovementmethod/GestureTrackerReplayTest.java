@@ -0,0 +1,187 @@
+package me.saket.bettermovementmethod;
+
+import android.os.SystemClock;
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.URLSpan;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays gestures with and without {@link LinkGestureTracker}, which skips hit-testing events whose outcome is
+ * already known from ACTION_DOWN.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class GestureTrackerReplayTest {
+
+  private static final String TEXT = "Visit https://saket.me or https://github.com/saket today";
+  private static final int MOVE_COUNT = 20;
+
+  private TextView textView;
+  private BetterLinkMovementMethod movementMethod;
+  private final HitTestCounter hitTestCounter = new HitTestCounter();
+
+  @Before
+  public void setUp() {
+    SpannableString text = new SpannableString(TEXT);
+    addLink(text, "https://saket.me");
+    addLink(text, "https://github.com/saket");
+
+    textView = new TextView(RuntimeEnvironment.application);
+    textView.setText(text, TextView.BufferType.SPANNABLE);
+    movementMethod = BetterLinkMovementMethod.newInstance()
+        .setHitTestIndexEnabled(true)
+        .setLinkMetricsListener(hitTestCounter);
+    textView.setMovementMethod(movementMethod);
+    textView.measure(
+        View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY));
+    textView.layout(0, 0, 1080, 400);
+  }
+
+  @Test
+  public void trackerSkipsHitTestsOfEventsOverTheTouchedLink() {
+    GestureTrace trace = dragWithinLink("https://saket.me");
+
+    movementMethod.gestureTrackerEnabled = false;
+    hitTestCounter.count = 0;
+    GestureTraceReplayer.Report untrackedReport = GestureTraceReplayer.replay(movementMethod, textView, trace);
+    int untrackedHitTests = hitTestCounter.count;
+
+    movementMethod.gestureTrackerEnabled = true;
+    hitTestCounter.count = 0;
+    GestureTraceReplayer.Report trackedReport = GestureTraceReplayer.replay(movementMethod, textView, trace);
+    int trackedHitTests = hitTestCounter.count;
+
+    // Every DOWN, MOVE and UP is hit-tested without the tracker. With it, only the DOWN is.
+    assertEquals(MOVE_COUNT + 2, untrackedHitTests);
+    assertEquals(1, trackedHitTests);
+    assertEquals(1, untrackedReport.clickCount());
+    assertEquals(1, trackedReport.clickCount());
+  }
+
+  @Test
+  public void gesturesStartingOffALinkDoNotHighlightLinksTheyCross() {
+    GestureTrace trace = dragAcrossLinks();
+
+    movementMethod.gestureTrackerEnabled = false;
+    assertTrue("Without the tracker, crossed links get highlighted", dispatchAndCheckHighlightRequests(trace));
+
+    movementMethod.gestureTrackerEnabled = true;
+    hitTestCounter.count = 0;
+    assertFalse(dispatchAndCheckHighlightRequests(trace));
+    assertEquals(1, hitTestCounter.count);
+
+    GestureTraceReplayer.Report report = GestureTraceReplayer.replay(movementMethod, textView, trace);
+    assertEquals(0, report.clickCount());
+    assertEquals(0, report.spanMutationCount());
+  }
+
+  /**
+   * Dispatches <var>trace</var>'s events one at a time. Highlights are applied on the next frame, which doesn't
+   * arrive while events are dispatched back-to-back, so pending highlights are checked after every event instead.
+   *
+   * @return Whether any event requested a link to be highlighted.
+   */
+  private boolean dispatchAndCheckHighlightRequests(GestureTrace trace) {
+    GestureState state = GestureState.of(textView);
+    Spannable text = (Spannable) textView.getText();
+    boolean highlightRequested = false;
+    long downTime = SystemClock.uptimeMillis();
+    for (int i = 0; i < trace.size(); i++) {
+      MotionEvent event = MotionEvent.obtain(downTime, downTime + trace.eventTime(i), trace.action(i), trace.x(i), trace.y(i), 0);
+      movementMethod.onTouchEvent(textView, text, event);
+      event.recycle();
+      highlightRequested |= state.isUrlHighlighted || state.pendingHighlightSpan != null;
+    }
+    return highlightRequested;
+  }
+
+  /**
+   * A DOWN in the middle of <var>url</var>, MOVEs along it that leave the touch slop, and an UP.
+   */
+  private GestureTrace dragWithinLink(String url) {
+    Layout layout = textView.getLayout();
+    int linkStart = TEXT.indexOf(url);
+    float left = xOf(layout, linkStart);
+    float right = xOf(layout, linkStart + url.length());
+    float y = yOf(layout, linkStart);
+
+    GestureTrace.Builder builder = new GestureTrace.Builder();
+    long time = 0;
+    builder.add(MotionEvent.ACTION_DOWN, (left + right) / 2, y, time);
+    for (int i = 0; i < MOVE_COUNT; i++) {
+      // Back and forth between the link's quarters.
+      float x = i % 2 == 0 ? left + (right - left) / 4 : right - (right - left) / 4;
+      builder.add(MotionEvent.ACTION_MOVE, x, y, time += 16);
+    }
+    builder.add(MotionEvent.ACTION_UP, (left + right) / 2, y, time + 16);
+    return builder.build();
+  }
+
+  /**
+   * A DOWN on "Visit", MOVEs over both links and an UP on the second link.
+   */
+  private GestureTrace dragAcrossLinks() {
+    Layout layout = textView.getLayout();
+    String firstUrl = "https://saket.me";
+    String secondUrl = "https://github.com/saket";
+    int firstLinkStart = TEXT.indexOf(firstUrl);
+    int secondLinkStart = TEXT.indexOf(secondUrl);
+    float y = yOf(layout, 0);
+
+    GestureTrace.Builder builder = new GestureTrace.Builder();
+    long time = 0;
+    builder.add(MotionEvent.ACTION_DOWN, xOf(layout, 1), y, time);
+    builder.add(MotionEvent.ACTION_MOVE, xOf(layout, firstLinkStart + firstUrl.length() / 2), y, time += 16);
+    builder.add(MotionEvent.ACTION_MOVE, xOf(layout, secondLinkStart + secondUrl.length() / 2), y, time += 16);
+    builder.add(MotionEvent.ACTION_UP, xOf(layout, secondLinkStart + secondUrl.length() / 2), y, time + 16);
+    return builder.build();
+  }
+
+  private float xOf(Layout layout, int offset) {
+    return textView.getTotalPaddingLeft() + layout.getPrimaryHorizontal(offset);
+  }
+
+  private float yOf(Layout layout, int offset) {
+    int line = layout.getLineForOffset(offset);
+    return textView.getTotalPaddingTop() + (layout.getLineTop(line) + layout.getLineBottom(line)) / 2f;
+  }
+
+  private static void addLink(Spannable text, String url) {
+    int start = TEXT.indexOf(url);
+    text.setSpan(new URLSpan(url), start, start + url.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+  }
+
+  private static final class HitTestCounter implements LinkMetricsListener {
+    int count;
+
+    @Override
+    public void onPhaseMeasured(int phase, long durationNanos) {
+      if (phase == PHASE_HIT_TEST) {
+        count++;
+      }
+    }
+
+    @Override
+    public void onHitTest(int spansScanned, boolean cacheHit) {
+    }
+  }
+}
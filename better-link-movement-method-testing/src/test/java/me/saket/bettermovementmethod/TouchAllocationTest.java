@@ -0,0 +1,143 @@
+package me.saket.bettermovementmethod;
+
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ClickableSpan;
+import android.text.style.URLSpan;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Replays taps on a link through {@link BetterLinkMovementMethod#onTouchEvent(TextView, Spannable, MotionEvent)}
+ * and checks that touch handling does not allocate in steady state when the hit-test index and the link geometry
+ * cache are enabled.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class TouchAllocationTest {
+
+  private static final String TEXT = "Visit https://saket.me or https://github.com/saket today";
+  private static final int MOVE_COUNT = 20;
+
+  private TextView textView;
+
+  @Before
+  public void setUp() {
+    SpannableString text = new SpannableString(TEXT);
+    addLink(text, "https://saket.me");
+    addLink(text, "https://github.com/saket");
+
+    textView = new TextView(RuntimeEnvironment.application);
+    textView.setText(text, TextView.BufferType.SPANNABLE);
+  }
+
+  @Test
+  public void steadyStateGesturesDoNotAllocate() {
+    BetterLinkMovementMethod movementMethod = new BetterLinkMovementMethod() {
+      // Highlights add spans to the text (which notifies its span watchers using getSpans()) or draw paths, both
+      // of which allocate inside the framework. They're replaced with the bookkeeping the gesture relies on.
+      @Override
+      protected void highlightUrl(TextView textView, ClickableSpan clickableSpan, Spannable text) {
+        GestureState state = GestureState.of(textView);
+        state.isUrlHighlighted = true;
+        state.highlightedSpan = clickableSpan;
+      }
+
+      @Override
+      protected void removeUrlHighlightColor(TextView textView) {
+        GestureState state = GestureState.of(textView);
+        state.isUrlHighlighted = false;
+        state.highlightedSpan = null;
+      }
+    };
+    movementMethod.setHitTestIndexEnabled(true).setLinkGeometryCacheEnabled(true);
+    attach(movementMethod);
+    GestureTrace trace = tapOnLink("https://saket.me");
+
+    // Warm up, so that the index, the link rectangles and the framework's caches are in place.
+    for (int i = 0; i < 20; i++) {
+      GestureTraceReplayer.replay(movementMethod, textView, trace);
+    }
+
+    // The runtime can occasionally allocate on this thread by itself, e.g., while compiling code. Allocations made
+    // by touch handling would show up in every round.
+    long allocatedBytes = Long.MAX_VALUE;
+    int allocationCount = Integer.MAX_VALUE;
+    for (int round = 0; round < 5; round++) {
+      GestureTraceReplayer.Report report = GestureTraceReplayer.replay(movementMethod, textView, trace);
+      assertEquals(1, report.clickCount());
+      allocatedBytes = Math.min(allocatedBytes, report.allocatedBytes());
+      allocationCount = Math.min(allocationCount, report.allocationCount());
+    }
+
+    // Only one of them is measured, the other one is -1.
+    assumeTrue(allocatedBytes != -1 || allocationCount != -1);
+    assertEquals(0, Math.max(allocatedBytes, allocationCount));
+  }
+
+  @Test
+  public void highlightSpanIsReusedAcrossGestures() {
+    BetterLinkMovementMethod movementMethod = BetterLinkMovementMethod.newInstance().setHitTestIndexEnabled(true);
+    attach(movementMethod);
+    GestureTrace trace = tapOnLink("https://saket.me");
+
+    GestureTraceReplayer.replay(movementMethod, textView, trace);
+    BackgroundColorSpan firstHighlightSpan = GestureState.of(textView).highlightSpan;
+    GestureTraceReplayer.replay(movementMethod, textView, trace);
+
+    assertNotNull(firstHighlightSpan);
+    assertSame(firstHighlightSpan, GestureState.of(textView).highlightSpan);
+  }
+
+  private void attach(BetterLinkMovementMethod movementMethod) {
+    textView.setMovementMethod(movementMethod);
+    textView.measure(
+        View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY));
+    textView.layout(0, 0, 1080, 400);
+  }
+
+  /**
+   * A DOWN in the middle of <var>url</var>, MOVEs that stay within the touch slop and an UP.
+   */
+  private GestureTrace tapOnLink(String url) {
+    int linkStart = TEXT.indexOf(url);
+    int linkEnd = linkStart + url.length();
+    Layout layout = textView.getLayout();
+    int line = layout.getLineForOffset(linkStart);
+    float x = textView.getTotalPaddingLeft() + (layout.getPrimaryHorizontal(linkStart) + layout.getPrimaryHorizontal(linkEnd)) / 2;
+    float y = textView.getTotalPaddingTop() + (layout.getLineTop(line) + layout.getLineBottom(line)) / 2f;
+
+    GestureTrace.Builder builder = new GestureTrace.Builder();
+    long time = 0;
+    builder.add(MotionEvent.ACTION_DOWN, x, y, time);
+    for (int i = 0; i < MOVE_COUNT; i++) {
+      builder.add(MotionEvent.ACTION_MOVE, x + i % 2, y, time += 16);
+    }
+    builder.add(MotionEvent.ACTION_UP, x, y, time + 16);
+    return builder.build();
+  }
+
+  private static void addLink(Spannable text, String url) {
+    int start = TEXT.indexOf(url);
+    text.setSpan(new URLSpan(url), start, start + url.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+  }
+}
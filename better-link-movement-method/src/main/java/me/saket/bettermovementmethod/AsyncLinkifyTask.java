@@ -0,0 +1,122 @@
+package me.saket.bettermovementmethod;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.widget.TextView;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+
+/**
+ * Scans a snapshot of a TextView's text for links on a background executor and adds the detected links back
+ * to the TextView on the main thread in small batches. Results are discarded if the TextView's text changes
+ * before they're delivered.
+ */
+final class AsyncLinkifyTask implements Runnable, TextWatcher {
+
+  // Number of links added to the text per main thread message.
+  private static final int BATCH_SIZE = 50;
+  private static final Handler MAIN_THREAD_HANDLER = new Handler(Looper.getMainLooper());
+
+  private final WeakReference<TextView> textViewRef;
+  private final Spannable text;
+  private final String textSnapshot;
+  private final int linkifyMask;
+  private volatile LinkRanges detectedLinks;
+  private int appliedCount;
+  private boolean textEdited;
+
+  private final Runnable batchApplier = new Runnable() {
+    @Override
+    public void run() {
+      applyNextBatch();
+    }
+  };
+
+  static void start(TextView textView, int linkifyMask, Executor executor) {
+    if (!(textView.getText() instanceof Spannable)) {
+      textView.setText(textView.getText(), TextView.BufferType.SPANNABLE);
+    }
+
+    AsyncLinkifyTask task = new AsyncLinkifyTask(textView, (Spannable) textView.getText(), linkifyMask);
+    AsyncLinkifyTask previousTask = (AsyncLinkifyTask) textView.getTag(R.id.bettermovementmethod_pending_linkify);
+    if (previousTask != null) {
+      previousTask.stopWatchingText();
+    }
+    textView.setTag(R.id.bettermovementmethod_pending_linkify, task);
+
+    if (task.text instanceof Editable) {
+      // Editables can change without a call to setText().
+      task.text.setSpan(task, 0, task.text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+    }
+    executor.execute(task);
+  }
+
+  private AsyncLinkifyTask(TextView textView, Spannable text, int linkifyMask) {
+    this.textViewRef = new WeakReference<>(textView);
+    this.text = text;
+    this.textSnapshot = text.toString();
+    this.linkifyMask = linkifyMask;
+  }
+
+  @Override
+  public void run() {
+    // Runs on the background executor.
+    detectedLinks = Linkifier.detectLinksWithCache(textSnapshot, linkifyMask);
+    MAIN_THREAD_HANDLER.post(batchApplier);
+  }
+
+  private void applyNextBatch() {
+    TextView textView = textViewRef.get();
+    if (textView == null || isStale(textView)) {
+      stopWatchingText();
+      return;
+    }
+
+    LinkRanges links = detectedLinks;
+    if (Linkifier.isCompactLinkStorageEnabled()) {
+      // All links are added as a single span.
+      Linkifier.replaceLinks(text, links);
+      appliedCount = links.size();
+    } else if (appliedCount == 0) {
+      Linkifier.removeLinks(text);
+    }
+    int batchEnd = Math.min(appliedCount + BATCH_SIZE, links.size());
+    Linkifier.applyLinks(text, links, appliedCount, batchEnd);
+    appliedCount = batchEnd;
+
+    if (appliedCount < links.size()) {
+      MAIN_THREAD_HANDLER.post(batchApplier);
+    } else {
+      stopWatchingText();
+      textView.setTag(R.id.bettermovementmethod_pending_linkify, null);
+    }
+  }
+
+  private boolean isStale(TextView textView) {
+    return textEdited
+        || textView.getTag(R.id.bettermovementmethod_pending_linkify) != this
+        || textView.getText() != text;
+  }
+
+  private void stopWatchingText() {
+    text.removeSpan(this);
+  }
+
+  @Override
+  public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+  }
+
+  @Override
+  public void onTextChanged(CharSequence s, int start, int before, int count) {
+    textEdited = true;
+  }
+
+  @Override
+  public void afterTextChanged(Editable s) {
+  }
+}
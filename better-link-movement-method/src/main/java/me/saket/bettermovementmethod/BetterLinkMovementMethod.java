@@ -2,6 +2,10 @@ package me.saket.bettermovementmethod;
 
 import android.app.Activity;
 import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.Layout;
 import android.text.Selection;
 import android.text.Spannable;
@@ -11,7 +15,9 @@ import android.text.style.BackgroundColorSpan;
 import android.text.style.ClickableSpan;
 import android.text.style.URLSpan;
 import android.text.util.Linkify;
+import android.view.Choreographer;
 import android.view.HapticFeedbackConstants;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
@@ -19,6 +25,8 @@ import android.view.ViewGroup;
 import android.view.Window;
 import android.widget.TextView;
 
+import java.util.concurrent.Executor;
+
 /**
  * Handles URL clicks on TextViews. Unlike the default implementation, this:
  * <p>
@@ -27,21 +35,41 @@ import android.widget.TextView;
  * <li>Let's you handle single and long clicks on URLs</li>
  * <li>Correctly identifies focused URLs (Unlike the default implementation where a click is registered even if it's
  * made outside of the URL's bounds if there is no more text in that direction.)</li>
+ * <li>Moves between links using a keyboard or D-pad and highlights links under a mouse pointer.</li>
  * </ul>
  */
 public class BetterLinkMovementMethod extends LinkMovementMethod {
 
-  private static BetterLinkMovementMethod singleInstance;
-  private static final int LINKIFY_NONE = -2;
+  static final int LINKIFY_NONE = -2;
 
   private OnLinkClickListener onLinkClickListener;
   private OnLinkLongClickListener onLinkLongClickListener;
+  private OnLinkInfoClickListener onLinkInfoClickListener;
+  private OnLinkInfoLongClickListener onLinkInfoLongClickListener;
   private final RectF touchedLineBounds = new RectF();
-  private boolean isUrlHighlighted;
-  private ClickableSpan clickableSpanUnderTouchOnActionDown;
-  private int activeTextViewHashcode;
-  private LongPressTimer ongoingLongPressTimer;
-  private boolean wasLongPressRegistered;
+  private boolean hitTestIndexEnabled;
+  private boolean linkGeometryCacheEnabled;
+  private float touchTargetExpansion;
+  private boolean overlayHighlightEnabled;
+  private int longPressTimeoutMillis = -1;
+  private long highlightUpdatesRequested;
+  private long highlightUpdatesApplied;
+  private LinkMetricsListener metricsListener;
+  private OnLinkPrefetchListener onLinkPrefetchListener;
+  private Executor prefetchExecutor;
+  private AsyncOnLinkClickListener asyncOnLinkClickListener;
+  private AsyncOnLinkLongClickListener asyncOnLinkLongClickListener;
+  private Executor clickListenerExecutor;
+  private final SpanTypeRegistry spanTypes = new SpanTypeRegistry();
+  // Disabled only by tests, for comparing touch handling against hit-testing every event.
+  boolean gestureTrackerEnabled = true;
+
+  private static final Handler MAIN_THREAD_HANDLER = new Handler(Looper.getMainLooper());
+
+  private static final class SingleInstanceHolder {
+    // Initialized lazily and thread-safely by the class loader on first access.
+    static final BetterLinkMovementMethod INSTANCE = new BetterLinkMovementMethod();
+  }
 
   public interface OnLinkClickListener {
     /**
@@ -61,6 +89,86 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
     boolean onLongClick(TextView textView, String url);
   }
 
+  /**
+   * Like {@link OnLinkClickListener}, but receives a {@link LinkInfo} that identifies the type of the clicked link,
+   * so that it doesn't have to be parsed from its URL on every click.
+   */
+  public interface OnLinkInfoClickListener {
+    /**
+     * @param textView The TextView on which a click was registered.
+     * @param link     The clicked link.
+     * @return True if this click was handled. False to let Android handle the URL.
+     */
+    boolean onClick(TextView textView, LinkInfo link);
+  }
+
+  /**
+   * Like {@link OnLinkLongClickListener}, but receives a {@link LinkInfo}. See {@link OnLinkInfoClickListener}.
+   */
+  public interface OnLinkInfoLongClickListener {
+    /**
+     * @param textView The TextView on which a long-click was registered.
+     * @param link     The long-clicked link.
+     * @return True if this long-click was handled. False to let Android handle the URL (as a short-click).
+     */
+    boolean onLongClick(TextView textView, LinkInfo link);
+  }
+
+  /**
+   * Like {@link OnLinkClickListener}, but called on a background executor so that slow handling (like resolving
+   * deep links) does not block the main thread. See {@link #setAsyncOnLinkClickListener(AsyncOnLinkClickListener, Executor)}.
+   */
+  public interface AsyncOnLinkClickListener {
+    /**
+     * @param url The clicked URL.
+     * @return True if this click was handled. False to let Android handle the URL, which happens on the main thread.
+     */
+    boolean onClick(String url);
+  }
+
+  /**
+   * Like {@link OnLinkLongClickListener}, but called on a background executor. See {@link AsyncOnLinkClickListener}.
+   */
+  public interface AsyncOnLinkLongClickListener {
+    /**
+     * @param url The long-clicked URL.
+     * @return True if this long-click was handled. False to let Android handle the URL (as a short-click), which
+     * happens on the main thread.
+     */
+    boolean onLongClick(String url);
+  }
+
+  public interface OnLinkPrefetchListener {
+    /**
+     * Called on the prefetch executor as soon as a link is touched, before it's known whether the touch will
+     * turn into a click. Can be used for speculatively resolving or preconnecting to the URL.
+     *
+     * @param url The touched URL.
+     */
+    void onPrefetch(String url);
+
+    /**
+     * Called on the prefetch executor when a touch for which {@link #onPrefetch(String)} was called will not
+     * result in a click or a long-click, e.g., because the finger moved off the link or the gesture turned
+     * into a scroll. Use a serial executor if this must never run before {@link #onPrefetch(String)}.
+     *
+     * @param url The URL passed to {@link #onPrefetch(String)}.
+     */
+    void onPrefetchCancelled(String url);
+  }
+
+  /**
+   * Extracts the text passed to click listeners from spans of a type registered using
+   * {@link #registerSpanType(Class, int, SpanTextExtractor, OnLinkClickListener)}.
+   */
+  public interface SpanTextExtractor<T extends ClickableSpan> {
+    /**
+     * @param text The TextView's text, which contains <var>span</var>.
+     * @param span The clicked span.
+     */
+    String extractText(Spanned text, T span);
+  }
+
   /**
    * Return a new instance of BetterLinkMovementMethod.
    */
@@ -77,11 +185,127 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
   public static BetterLinkMovementMethod linkify(int linkifyMask, TextView... textViews) {
     BetterLinkMovementMethod movementMethod = newInstance();
     for (TextView textView : textViews) {
-      addLinks(linkifyMask, movementMethod, textView);
+      addLinks(linkifyMask, movementMethod, textView, null);
     }
     return movementMethod;
   }
 
+  /**
+   * Like {@link #linkify(int, TextView...)}, but links are detected on <var>executor</var> instead of the main
+   * thread. Detected links are added to the TextViews in small batches once they're ready and are discarded if
+   * a TextView's text changes in the meantime. Touches on the TextViews are handled normally while the
+   * detection is pending.
+   *
+   * @param linkifyMask One of {@link Linkify#ALL}, {@link Linkify#PHONE_NUMBERS}, {@link Linkify#MAP_ADDRESSES},
+   *                    {@link Linkify#WEB_URLS} and {@link Linkify#EMAIL_ADDRESSES}.
+   * @param executor    Executor for running link detection.
+   * @param textViews   The TextViews on which a {@link BetterLinkMovementMethod} should be registered.
+   * @return The registered {@link BetterLinkMovementMethod} on the TextViews.
+   */
+  public static BetterLinkMovementMethod linkifyAsync(int linkifyMask, Executor executor, TextView... textViews) {
+    BetterLinkMovementMethod movementMethod = newInstance();
+    for (TextView textView : textViews) {
+      addLinks(linkifyMask, movementMethod, textView, executor);
+    }
+    return movementMethod;
+  }
+
+  /**
+   * Like {@link #linkify(int, TextView...)}, but adds precomputed <var>links</var> to <var>textView</var> instead
+   * of detecting them. Links can be precomputed using a {@link LinkDetector}, for example on a server, and
+   * stored along with the text using {@link LinkRangeCodec}.
+   *
+   * @param links Links in <var>textView</var>'s current text.
+   * @return The registered {@link BetterLinkMovementMethod} on the TextView.
+   * @throws IllegalArgumentException If the links aren't sorted by their start offsets, have invalid ranges or
+   *                                  exceed the length of <var>textView</var>'s text.
+   */
+  public static BetterLinkMovementMethod linkify(LinkRanges links, TextView textView) {
+    BetterLinkMovementMethod movementMethod = newInstance();
+    textView.setMovementMethod(movementMethod);
+    // Discard results of any pending async detection.
+    textView.setTag(R.id.bettermovementmethod_pending_linkify, null);
+    Linkifier.applyLinks(textView, links);
+    return movementMethod;
+  }
+
+  /**
+   * Like {@link #linkify(LinkRanges, TextView)}, but for links encoded using {@link LinkRangeCodec#encode(LinkRanges)}.
+   *
+   * @throws IllegalArgumentException If <var>encodedLinks</var> is malformed or the links exceed the length of
+   *                                  <var>textView</var>'s text.
+   */
+  public static BetterLinkMovementMethod linkify(byte[] encodedLinks, TextView textView) {
+    return linkify(LinkRangeCodec.decode(encodedLinks), textView);
+  }
+
+  /**
+   * Like {@link #linkify(int, TextView...)}, but links are added to a copy of each TextView's text, which then
+   * replaces the TextView's text in a single {@link TextView#setText(CharSequence, TextView.BufferType)}. The
+   * TextViews are not notified of every removed and added link, which otherwise invalidates (and for editable
+   * texts, re-lays out) the TextView once per link. Useful for binding texts with hundreds of links.
+   * <p>
+   * Because the text is replaced, the TextViews' selection is cleared and their TextWatchers are notified.
+   *
+   * @param linkifyMask One of {@link Linkify#ALL}, {@link Linkify#PHONE_NUMBERS}, {@link Linkify#MAP_ADDRESSES},
+   *                    {@link Linkify#WEB_URLS} and {@link Linkify#EMAIL_ADDRESSES}.
+   * @param textViews   The TextViews on which a {@link BetterLinkMovementMethod} should be registered.
+   * @return The registered {@link BetterLinkMovementMethod} on the TextViews.
+   */
+  public static BetterLinkMovementMethod linkifyInBulk(int linkifyMask, TextView... textViews) {
+    BetterLinkMovementMethod movementMethod = newInstance();
+    for (TextView textView : textViews) {
+      textView.setMovementMethod(movementMethod);
+      // Discard results of any pending async detection.
+      textView.setTag(R.id.bettermovementmethod_pending_linkify, null);
+      Linkifier.addLinksInBulk(textView, linkifyMask);
+    }
+    return movementMethod;
+  }
+
+  /**
+   * Number of link span additions and removals that {@link #linkifyInBulk(int, TextView...)} has kept away from
+   * TextViews so far. Each of them would have notified a TextView's span watchers, while every bulk linkify
+   * notifies them only once. Must be called on the main thread.
+   */
+  public static long getSpanChangesAvoidedByBulkLinkify() {
+    return Linkifier.spanChangesAvoidedByBulkLinkify();
+  }
+
+  /**
+   * Like {@link #linkify(int, TextView...)}, but only detects links in the lines of <var>textView</var> that are
+   * visible (plus a few lines above and below). Links are detected in new lines as the TextView scrolls and
+   * removed from lines that are no longer near the viewport. Intended for scrollable TextViews with very
+   * large texts.
+   *
+   * @param linkifyMask One of {@link Linkify#ALL}, {@link Linkify#PHONE_NUMBERS}, {@link Linkify#MAP_ADDRESSES},
+   *                    {@link Linkify#WEB_URLS} and {@link Linkify#EMAIL_ADDRESSES}.
+   * @return The registered {@link BetterLinkMovementMethod} on the TextView.
+   */
+  public static BetterLinkMovementMethod linkifyViewport(int linkifyMask, TextView textView) {
+    BetterLinkMovementMethod movementMethod = newInstance();
+    textView.setMovementMethod(movementMethod);
+    ViewportLinkifier.attach(textView, linkifyMask);
+    return movementMethod;
+  }
+
+  /**
+   * Like {@link #linkify(int, TextView...)}, but also detects links whenever the text of <var>textView</var>
+   * changes. Only the edited part of the text is scanned again, which makes this suitable for TextViews whose
+   * text keeps growing, like chats and logs that are updated using {@link TextView#append(CharSequence)}.
+   * Links are always stored as spans, even if {@link #setCompactLinkStorageEnabled(boolean)} is enabled.
+   *
+   * @param linkifyMask One of {@link Linkify#ALL}, {@link Linkify#PHONE_NUMBERS}, {@link Linkify#MAP_ADDRESSES},
+   *                    {@link Linkify#WEB_URLS} and {@link Linkify#EMAIL_ADDRESSES}.
+   * @return The registered {@link BetterLinkMovementMethod} on the TextView.
+   */
+  public static BetterLinkMovementMethod linkifyIncremental(int linkifyMask, TextView textView) {
+    BetterLinkMovementMethod movementMethod = newInstance();
+    textView.setMovementMethod(movementMethod);
+    IncrementalLinkifier.attach(textView, linkifyMask);
+    return movementMethod;
+  }
+
   /**
    * Like {@link #linkify(int, TextView...)}, but can be used for TextViews with HTML links.
    *
@@ -101,7 +325,19 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
    */
   public static BetterLinkMovementMethod linkify(int linkifyMask, ViewGroup viewGroup) {
     BetterLinkMovementMethod movementMethod = newInstance();
-    rAddLinks(linkifyMask, viewGroup, movementMethod);
+    rAddLinks(linkifyMask, viewGroup, movementMethod, null);
+    return movementMethod;
+  }
+
+  /**
+   * Like {@link #linkify(int, ViewGroup)}, but links are detected on <var>executor</var> instead of the main
+   * thread. See {@link #linkifyAsync(int, Executor, TextView...)}.
+   *
+   * @return The registered {@link BetterLinkMovementMethod} on the TextViews.
+   */
+  public static BetterLinkMovementMethod linkifyAsync(int linkifyMask, Executor executor, ViewGroup viewGroup) {
+    BetterLinkMovementMethod movementMethod = newInstance();
+    rAddLinks(linkifyMask, viewGroup, movementMethod, executor);
     return movementMethod;
   }
 
@@ -127,7 +363,7 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
     ViewGroup activityLayout = ((ViewGroup) ((ViewGroup) activity.findViewById(Window.ID_ANDROID_CONTENT)).getChildAt(0));
 
     BetterLinkMovementMethod movementMethod = newInstance();
-    rAddLinks(linkifyMask, activityLayout, movementMethod);
+    rAddLinks(linkifyMask, activityLayout, movementMethod, null);
     return movementMethod;
   }
 
@@ -142,15 +378,67 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
   }
 
   /**
-   * Get a static instance of BetterLinkMovementMethod. Do note that registering a click listener on the returned
-   * instance is not supported because it will potentially be shared on multiple TextViews.
+   * Register a {@link BetterLinkMovementMethod} on TextViews inside a recycling container like a RecyclerView or a
+   * ListView, once for each item View when it's added to the container for the first time. Links are detected
+   * again automatically whenever the text of these TextViews changes, so neither this method nor the other
+   * linkify methods have to be called again when items are bound.
+   * <p>
+   * This replaces any {@link ViewGroup.OnHierarchyChangeListener} set on <var>container</var>.
+   *
+   * @param linkifyMask One of {@link Linkify#ALL}, {@link Linkify#PHONE_NUMBERS}, {@link Linkify#MAP_ADDRESSES},
+   *                    {@link Linkify#WEB_URLS} and {@link Linkify#EMAIL_ADDRESSES}.
+   * @return The registered {@link BetterLinkMovementMethod} on the TextViews.
+   */
+  public static BetterLinkMovementMethod linkifyRecyclingContainer(int linkifyMask, ViewGroup container) {
+    BetterLinkMovementMethod movementMethod = newInstance();
+    RecyclingContainerLinkifier.register(container, linkifyMask, movementMethod);
+    return movementMethod;
+  }
+
+  /**
+   * Like {@link #linkifyRecyclingContainer(int, ViewGroup)}, but can be used for TextViews with HTML links.
+   *
+   * @return The registered {@link BetterLinkMovementMethod} on the TextViews.
+   */
+  @SuppressWarnings("unused")
+  public static BetterLinkMovementMethod linkifyHtmlRecyclingContainer(ViewGroup container) {
+    return linkifyRecyclingContainer(LINKIFY_NONE, container);
+  }
+
+  /**
+   * Get a static instance of BetterLinkMovementMethod that can be shared by any number of TextViews. Gesture
+   * state is tracked separately for each TextView. Do note that registering a click listener for all TextViews
+   * on the returned instance is not supported to avoid memory leaks. Use
+   * {@link #setOnLinkClickListener(TextView, OnLinkClickListener)} for registering them per TextView instead.
    */
   @SuppressWarnings("unused")
   public static BetterLinkMovementMethod getInstance() {
-    if (singleInstance == null) {
-      singleInstance = new BetterLinkMovementMethod();
+    return SingleInstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Replace the {@link LinkDetector} used by all linkify methods. Defaults to {@link LinkifyLinkDetector}.
+   * {@link FastLinkDetector} can be used for detecting links in a single pass without regular expressions.
+   */
+  public static void setLinkDetector(LinkDetector linkDetector) {
+    if (linkDetector == null) {
+      throw new NullPointerException("linkDetector == null");
     }
-    return singleInstance;
+    Linkifier.setLinkDetector(linkDetector);
+  }
+
+  /**
+   * Store all links detected by {@link #linkify(int, TextView...)}, {@link #linkifyAsync(int, Executor, TextView...)}
+   * and {@link #linkifyRecyclingContainer(int, ViewGroup)} (and their variants) in a single span per text, instead
+   * of adding a {@link URLSpan} for every link. This uses several times less memory for texts with a large number
+   * of links, but the links are not underlined or colored, are ignored once the text is edited, and can't be
+   * navigated using a keyboard. Affects texts linkified after this is called.
+   * <p>
+   * Texts linkified using {@link #linkifyIncremental(int, TextView)} are not affected: they're expected to be
+   * edited, so their links are always stored as spans.
+   */
+  public static void setCompactLinkStorageEnabled(boolean enabled) {
+    Linkifier.setCompactLinkStorageEnabled(enabled);
   }
 
   protected BetterLinkMovementMethod() {
@@ -160,9 +448,9 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
    * Set a listener that will get called whenever any link is clicked on the TextView.
    */
   public BetterLinkMovementMethod setOnLinkClickListener(OnLinkClickListener clickListener) {
-    if (this == singleInstance) {
+    if (this == SingleInstanceHolder.INSTANCE) {
       throw new UnsupportedOperationException("Setting a click listener on the instance returned by getInstance() is not supported to avoid memory " +
-          "leaks. Please use newInstance() or any of the linkify() methods instead.");
+          "leaks. Please use newInstance(), any of the linkify() methods or setOnLinkClickListener(TextView, OnLinkClickListener) instead.");
     }
 
     this.onLinkClickListener = clickListener;
@@ -173,78 +461,311 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
    * Set a listener that will get called whenever any link is clicked on the TextView.
    */
   public BetterLinkMovementMethod setOnLinkLongClickListener(OnLinkLongClickListener longClickListener) {
-    if (this == singleInstance) {
+    if (this == SingleInstanceHolder.INSTANCE) {
       throw new UnsupportedOperationException("Setting a long-click listener on the instance returned by getInstance() is not supported to avoid " +
-          "memory leaks. Please use newInstance() or any of the linkify() methods instead.");
+          "memory leaks. Please use newInstance(), any of the linkify() methods or setOnLinkLongClickListener(TextView, OnLinkLongClickListener) " +
+          "instead.");
     }
 
     this.onLinkLongClickListener = longClickListener;
     return this;
   }
 
+  /**
+   * Set a listener that will get called with a {@link LinkInfo} whenever any link is clicked on the TextView.
+   * Takes precedence over the listener set using {@link #setOnLinkClickListener(OnLinkClickListener)}, but not
+   * over the ones set using {@link #setOnLinkClickListener(TextView, OnLinkClickListener)}.
+   */
+  public BetterLinkMovementMethod setOnLinkInfoClickListener(OnLinkInfoClickListener clickListener) {
+    if (this == SingleInstanceHolder.INSTANCE) {
+      throw new UnsupportedOperationException("Setting a click listener on the instance returned by getInstance() is not supported to avoid memory " +
+          "leaks. Please use newInstance(), any of the linkify() methods or setOnLinkClickListener(TextView, OnLinkClickListener) instead.");
+    }
+
+    this.onLinkInfoClickListener = clickListener;
+    return this;
+  }
+
+  /**
+   * Set a listener that will get called with a {@link LinkInfo} whenever any link is long-clicked on the TextView.
+   * See {@link #setOnLinkInfoClickListener(OnLinkInfoClickListener)}.
+   */
+  public BetterLinkMovementMethod setOnLinkInfoLongClickListener(OnLinkInfoLongClickListener longClickListener) {
+    if (this == SingleInstanceHolder.INSTANCE) {
+      throw new UnsupportedOperationException("Setting a long-click listener on the instance returned by getInstance() is not supported to avoid " +
+          "memory leaks. Please use newInstance(), any of the linkify() methods or setOnLinkLongClickListener(TextView, OnLinkLongClickListener) " +
+          "instead.");
+    }
+
+    this.onLinkInfoLongClickListener = longClickListener;
+    return this;
+  }
+
+  /**
+   * Set a listener that will get called whenever any link is clicked on <var>textView</var>. Takes precedence
+   * over the listener set using {@link #setOnLinkClickListener(OnLinkClickListener)}. Unlike the latter, this
+   * is also supported on the instance returned by {@link #getInstance()} because the listener is only retained
+   * by <var>textView</var>.
+   */
+  public BetterLinkMovementMethod setOnLinkClickListener(TextView textView, OnLinkClickListener clickListener) {
+    GestureState.of(textView).onLinkClickListener = clickListener;
+    return this;
+  }
+
+  /**
+   * Set a listener that will get called whenever any link is long-clicked on <var>textView</var>. See
+   * {@link #setOnLinkClickListener(TextView, OnLinkClickListener)}.
+   */
+  public BetterLinkMovementMethod setOnLinkLongClickListener(TextView textView, OnLinkLongClickListener longClickListener) {
+    GestureState.of(textView).onLinkLongClickListener = longClickListener;
+    return this;
+  }
+
+  /**
+   * Precompute the location of all links in a TextView's text instead of querying the text's spans on every
+   * touch event. Recommended for TextViews with a large number of links. The index is rebuilt automatically
+   * when the text or its layout changes.
+   * <p>
+   * This is also required for touch handling to not allocate in steady state. Without the index, every touch
+   * that has to be hit-tested queries the text's spans, which allocates an array. Converting touches to character
+   * offsets measures the text, which allocates as well, so {@link #setLinkGeometryCacheEnabled(boolean)} is needed
+   * too. The default highlight allocates when it adds its span, because the text notifies its span watchers.
+   */
+  public BetterLinkMovementMethod setHitTestIndexEnabled(boolean enabled) {
+    this.hitTestIndexEnabled = enabled;
+    return this;
+  }
+
+  /**
+   * Precompute the rectangles occupied by each link (one for every line a link spans) once per text layout, and
+   * resolve touches by checking which rectangle contains them. This avoids measuring text on every touch event
+   * and lets touches be matched to links using their exact bounds. Implies {@link #setHitTestIndexEnabled(boolean)}.
+   */
+  public BetterLinkMovementMethod setLinkGeometryCacheEnabled(boolean enabled) {
+    this.linkGeometryCacheEnabled = enabled;
+    return this;
+  }
+
+  /**
+   * Extend the touchable area of links by <var>expansionPx</var> in every direction. Useful for small links.
+   * Touches that land inside a link are always preferred over touches that land in the expanded area of another
+   * link. Only used when the link geometry cache is enabled, see {@link #setLinkGeometryCacheEnabled(boolean)}.
+   */
+  public BetterLinkMovementMethod setTouchTargetExpansion(float expansionPx) {
+    this.touchTargetExpansion = expansionPx;
+    return this;
+  }
+
+  /**
+   * Set the duration after which a touch on a link is registered as a long-click. Defaults to
+   * {@link ViewConfiguration#getLongPressTimeout()}.
+   */
+  public BetterLinkMovementMethod setLongPressTimeout(int timeoutMillis) {
+    if (timeoutMillis < 0) {
+      throw new IllegalArgumentException("timeoutMillis must not be negative: " + timeoutMillis);
+    }
+    this.longPressTimeoutMillis = timeoutMillis;
+    return this;
+  }
+
+  /**
+   * Long-press timers of all TextViews are scheduled together so that they occupy at most one message in the
+   * main thread's queue. Must be called on the main thread.
+   *
+   * @return Number of long-press timers that are currently waiting to run.
+   */
+  public static int getQueuedLongPressTimerCount() {
+    return LongPressScheduler.getInstance().queuedTimerCount();
+  }
+
+  /**
+   * Draw link highlights as an overlay on the TextView instead of adding a background span to its text. Touch
+   * feedback then leaves the text untouched and only invalidates the TextView, which avoids re-laying out
+   * editable texts and works for texts shared by multiple TextViews. Unlike the default highlight, this does
+   * not select the link's text. Requires API 18. Older versions keep using a background span.
+   */
+  public BetterLinkMovementMethod setOverlayHighlightEnabled(boolean enabled) {
+    this.overlayHighlightEnabled = enabled;
+    return this;
+  }
+
+  /**
+   * Set a listener that will get called on <var>executor</var> whenever a link is touched, so that the app can
+   * start preparing for a click on it while the finger is still down.
+   */
+  public BetterLinkMovementMethod setOnLinkPrefetchListener(OnLinkPrefetchListener prefetchListener, Executor executor) {
+    if (this == SingleInstanceHolder.INSTANCE) {
+      throw new UnsupportedOperationException("Setting a prefetch listener on the instance returned by getInstance() is not supported to avoid " +
+          "memory leaks. Please use newInstance() or any of the linkify() methods instead.");
+    }
+
+    this.onLinkPrefetchListener = prefetchListener;
+    this.prefetchExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Set a listener that will get called on <var>executor</var> whenever any link is clicked on the TextView, instead
+   * of the main thread. Any UI work must be posted back to the main thread by the listener. If the click isn't
+   * handled, Android's handling of the URL is posted to the main thread. Repeated clicks on the same link within
+   * the double-tap timeout are ignored.
+   * <p>
+   * Takes precedence over the listeners set using {@link #setOnLinkClickListener(OnLinkClickListener)} and
+   * {@link #setOnLinkInfoClickListener(OnLinkInfoClickListener)}. Durations of the listener are reported to the
+   * {@link LinkMetricsListener} from <var>executor</var>'s thread.
+   */
+  public BetterLinkMovementMethod setAsyncOnLinkClickListener(AsyncOnLinkClickListener clickListener, Executor executor) {
+    if (this == SingleInstanceHolder.INSTANCE) {
+      throw new UnsupportedOperationException("Setting a click listener on the instance returned by getInstance() is not supported to avoid " +
+          "memory leaks. Please use newInstance(), any of the linkify() methods or setOnLinkClickListener(TextView, OnLinkClickListener) " +
+          "instead.");
+    }
+
+    this.asyncOnLinkClickListener = clickListener;
+    this.clickListenerExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Like {@link #setAsyncOnLinkClickListener(AsyncOnLinkClickListener, Executor)}, but for long-clicks. Uses the
+   * same executor as the click listener, which gets replaced by <var>executor</var>.
+   */
+  public BetterLinkMovementMethod setAsyncOnLinkLongClickListener(AsyncOnLinkLongClickListener longClickListener, Executor executor) {
+    if (this == SingleInstanceHolder.INSTANCE) {
+      throw new UnsupportedOperationException("Setting a long-click listener on the instance returned by getInstance() is not supported to avoid " +
+          "memory leaks. Please use newInstance(), any of the linkify() methods or setOnLinkLongClickListener(TextView, OnLinkLongClickListener) " +
+          "instead.");
+    }
+
+    this.asyncOnLinkLongClickListener = longClickListener;
+    this.clickListenerExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Register a type of {@link ClickableSpan}s, e.g., mentions or hashtags, that need to be handled differently
+   * from other links. Also applies to subclasses of <var>spanClass</var> unless they're registered separately.
+   * <p>
+   * When spans overlap under a touch, the span whose type has the highest <var>priority</var> is picked.
+   * Unregistered spans have a priority of 0 and spans with equal priorities are resolved in the order of
+   * {@link Spanned#getSpans(int, int, Class)}.
+   *
+   * @param textExtractor Extracts the text passed to click listeners. Null to use the span's URL if it's a
+   *                      {@link URLSpan} or else its text.
+   * @param clickListener Called for clicks on spans of this type instead of the other click listeners.
+   *                      Null to use the other click listeners.
+   */
+  public <T extends ClickableSpan> BetterLinkMovementMethod registerSpanType(Class<T> spanClass, int priority,
+      SpanTextExtractor<? super T> textExtractor, OnLinkClickListener clickListener) {
+    if (this == SingleInstanceHolder.INSTANCE) {
+      throw new UnsupportedOperationException("Registering span types on the instance returned by getInstance() is not supported to avoid " +
+          "memory leaks. Please use newInstance() or any of the linkify() methods instead.");
+    }
+
+    spanTypes.register(spanClass, priority, textExtractor, clickListener);
+    return this;
+  }
+
+  /**
+   * Set a listener for receiving timings of touch handling and click dispatching. Touch handling does not do any
+   * extra work when no listener is set.
+   */
+  public BetterLinkMovementMethod setLinkMetricsListener(LinkMetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+    return this;
+  }
+
+  /**
+   * Highlight changes requested while a finger is dragged over links are coalesced to at most one per frame and
+   * dropped if they don't change the highlighted link.
+   *
+   * @return Number of requested highlight changes that did not have to be applied to the text.
+   */
+  public long getSkippedHighlightUpdateCount() {
+    return highlightUpdatesRequested - highlightUpdatesApplied;
+  }
+
 // ======== PUBLIC APIs END ======== //
 
-  private static void rAddLinks(int linkifyMask, ViewGroup viewGroup, BetterLinkMovementMethod movementMethod) {
+  private static void rAddLinks(int linkifyMask, ViewGroup viewGroup, BetterLinkMovementMethod movementMethod, Executor linkifyExecutor) {
     for (int i = 0; i < viewGroup.getChildCount(); i++) {
       View child = viewGroup.getChildAt(i);
 
       if (child instanceof ViewGroup) {
         // Recursively find child TextViews.
-        rAddLinks(linkifyMask, ((ViewGroup) child), movementMethod);
+        rAddLinks(linkifyMask, ((ViewGroup) child), movementMethod, linkifyExecutor);
       } else if (child instanceof TextView) {
         TextView textView = (TextView) child;
-        addLinks(linkifyMask, movementMethod, textView);
+        addLinks(linkifyMask, movementMethod, textView, linkifyExecutor);
       }
     }
   }
 
-  private static void addLinks(int linkifyMask, BetterLinkMovementMethod movementMethod, TextView textView) {
+  /**
+   * @param linkifyExecutor Executor for detecting links in the background or null for detecting them immediately.
+   */
+  private static void addLinks(int linkifyMask, BetterLinkMovementMethod movementMethod, TextView textView, Executor linkifyExecutor) {
     textView.setMovementMethod(movementMethod);
-    if (linkifyMask != LINKIFY_NONE) {
-      Linkify.addLinks(textView, linkifyMask);
+    if (linkifyMask == LINKIFY_NONE) {
+      return;
+    }
+
+    if (linkifyExecutor != null) {
+      AsyncLinkifyTask.start(textView, linkifyMask, linkifyExecutor);
+    } else {
+      // Discard results of any pending async detection.
+      textView.setTag(R.id.bettermovementmethod_pending_linkify, null);
+      Linkifier.addLinks(textView, linkifyMask);
     }
   }
 
   @Override
-  public boolean onTouchEvent(final TextView textView, Spannable text, MotionEvent event) {
-    if (activeTextViewHashcode != textView.hashCode()) {
+  public boolean onTouchEvent(TextView textView, Spannable text, MotionEvent event) {
+    final GestureState state = GestureState.of(textView);
+    state.movementMethod = this;
+
+    if (!state.autoLinkMaskCleared) {
       // Bug workaround: TextView stops calling onTouchEvent() once any URL is highlighted.
       // A hacky solution is to reset any "autoLink" property set in XML. But we also want
       // to do this once per TextView.
-      activeTextViewHashcode = textView.hashCode();
+      state.autoLinkMaskCleared = true;
       textView.setAutoLinkMask(0);
     }
 
-    final ClickableSpan clickableSpanUnderTouch = findClickableSpanUnderTouch(textView, text, event);
+    final LinkMetricsListener metrics = metricsListener;
+    final ClickableSpan clickableSpanUnderTouch = resolveClickableSpanUnderTouch(textView, text, event, state);
     if (event.getAction() == MotionEvent.ACTION_DOWN) {
-      clickableSpanUnderTouchOnActionDown = clickableSpanUnderTouch;
+      state.clickableSpanUnderTouchOnActionDown = clickableSpanUnderTouch;
     }
-    final boolean touchStartedOverAClickableSpan = clickableSpanUnderTouchOnActionDown != null;
+    final boolean touchStartedOverAClickableSpan = state.clickableSpanUnderTouchOnActionDown != null;
 
     switch (event.getAction()) {
       case MotionEvent.ACTION_DOWN:
+        // A link may still be highlighted by key navigation or a mouse pointer.
+        cancelPendingHighlight(state);
+        removeUrlHighlightColor(textView);
         if (clickableSpanUnderTouch != null) {
-          highlightUrl(textView, clickableSpanUnderTouch, text);
+          highlightUrlAndMeasure(textView, clickableSpanUnderTouch, text);
         }
 
-        if (touchStartedOverAClickableSpan && onLinkLongClickListener != null) {
-          LongPressTimer.OnTimerReachedListener longClickListener = new LongPressTimer.OnTimerReachedListener() {
-            @Override
-            public void onTimerReached() {
-              wasLongPressRegistered = true;
-              textView.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
-              removeUrlHighlightColor(textView);
-              dispatchUrlLongClick(textView, clickableSpanUnderTouch);
-            }
-          };
-          startTimerForRegisteringLongClick(textView, longClickListener);
+        if (touchStartedOverAClickableSpan && hasLongClickListener(state)) {
+          startTimerForRegisteringLongClick(textView, state);
+        }
+        if (touchStartedOverAClickableSpan && onLinkPrefetchListener != null) {
+          startPrefetch(textView, state, clickableSpanUnderTouch);
         }
         return touchStartedOverAClickableSpan;
 
       case MotionEvent.ACTION_UP:
         // Register a click only if the touch started and ended on the same URL.
-        if (!wasLongPressRegistered && touchStartedOverAClickableSpan && clickableSpanUnderTouch == clickableSpanUnderTouchOnActionDown) {
+        if (!state.wasLongPressRegistered && touchStartedOverAClickableSpan && clickableSpanUnderTouch == state.clickableSpanUnderTouchOnActionDown) {
+          // The prefetched link is being used.
+          state.prefetchedUrl = null;
+          long dispatchStartNanos = metrics != null ? System.nanoTime() : 0;
           dispatchUrlClick(textView, clickableSpanUnderTouch);
+          if (metrics != null) {
+            metrics.onPhaseMeasured(LinkMetricsListener.PHASE_DISPATCH_CLICK, System.nanoTime() - dispatchStartNanos);
+          }
         }
         cleanupOnTouchUp(textView);
 
@@ -259,17 +780,14 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
 
       case MotionEvent.ACTION_MOVE:
         // Stop listening for a long-press as soon as the user wanders off to unknown lands.
-        if (clickableSpanUnderTouch != clickableSpanUnderTouchOnActionDown) {
+        if (clickableSpanUnderTouch != state.clickableSpanUnderTouchOnActionDown) {
           removeLongPressCallback(textView);
+          cancelPrefetch(state);
         }
 
-        if (!wasLongPressRegistered) {
+        if (!state.wasLongPressRegistered) {
           // Toggle highlight.
-          if (clickableSpanUnderTouch != null) {
-            highlightUrl(textView, clickableSpanUnderTouch, text);
-          } else {
-            removeUrlHighlightColor(textView);
-          }
+          requestHighlight(state, clickableSpanUnderTouch);
         }
 
         return touchStartedOverAClickableSpan;
@@ -279,13 +797,388 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
     }
   }
 
+  @Override
+  public boolean onGenericMotionEvent(TextView textView, Spannable text, MotionEvent event) {
+    switch (event.getActionMasked()) {
+      case MotionEvent.ACTION_HOVER_ENTER:
+      case MotionEvent.ACTION_HOVER_MOVE: {
+        // Highlight links under a mouse pointer the same way as links under a finger.
+        GestureState state = GestureState.of(textView);
+        state.movementMethod = this;
+        requestHighlight(state, findClickableSpanUnderTouchAndMeasure(textView, text, event));
+        break;
+      }
+
+      case MotionEvent.ACTION_HOVER_EXIT: {
+        GestureState state = GestureState.of(textView);
+        state.movementMethod = this;
+        requestHighlight(state, null);
+        state.compactLinksTouchedInGesture.clear();
+        break;
+      }
+    }
+    return super.onGenericMotionEvent(textView, text, event);
+  }
+
+  @Override
+  public void onTakeFocus(TextView textView, Spannable text, int direction) {
+    GestureState state = GestureState.of(textView);
+    cancelPendingHighlight(state);
+    removeUrlHighlightColor(textView);
+    super.onTakeFocus(textView, text, direction);
+  }
+
+  @Override
+  protected boolean handleMovementKey(TextView textView, Spannable text, int keyCode, int movementMetaState, KeyEvent event) {
+    switch (keyCode) {
+      case KeyEvent.KEYCODE_DPAD_CENTER:
+      case KeyEvent.KEYCODE_ENTER:
+      case KeyEvent.KEYCODE_NUMPAD_ENTER:
+        if (KeyEvent.metaStateHasNoModifiers(movementMetaState) && event.getAction() == KeyEvent.ACTION_DOWN && event.getRepeatCount() == 0) {
+          if (clickFocusedLink(textView, text)) {
+            return true;
+          }
+        }
+        break;
+    }
+    return super.handleMovementKey(textView, text, keyCode, movementMetaState, event);
+  }
+
+  @Override
+  protected boolean up(TextView textView, Spannable text) {
+    return moveLinkFocus(textView, text, false) || scrollUp(textView, text, 1);
+  }
+
+  @Override
+  protected boolean down(TextView textView, Spannable text) {
+    return moveLinkFocus(textView, text, true) || scrollDown(textView, text, 1);
+  }
+
+  @Override
+  protected boolean left(TextView textView, Spannable text) {
+    return moveLinkFocus(textView, text, false) || scrollLeft(textView, text, 1);
+  }
+
+  @Override
+  protected boolean right(TextView textView, Spannable text) {
+    return moveLinkFocus(textView, text, true) || scrollRight(textView, text, 1);
+  }
+
+  /**
+   * Moves the highlight to the next or previous link within the visible lines. Links are looked up in the
+   * hit-test index, so each step costs a binary search instead of a scan of all spans.
+   *
+   * @return False if there's no link to move to, in which case the text should be scrolled instead.
+   */
+  private boolean moveLinkFocus(TextView textView, Spannable text, boolean forward) {
+    Layout layout = textView.getLayout();
+    if (layout == null) {
+      return false;
+    }
+    GestureState state = GestureState.of(textView);
+    state.movementMethod = this;
+    SpanHitTestIndex index = SpanHitTestIndex.obtain(textView, text, layout, spanTypes);
+
+    int visibleTop = textView.getScrollY();
+    int visibleBottom = visibleTop + textView.getHeight() - textView.getTotalPaddingTop() - textView.getTotalPaddingBottom();
+    int visibleStart = layout.getLineStart(layout.getLineForVertical(visibleTop));
+    int visibleEnd = layout.getLineEnd(layout.getLineForVertical(visibleBottom));
+
+    int focusedIndex = -1;
+    if (state.isUrlHighlighted) {
+      int focusedStart = text.getSpanStart(state.highlightedSpan);
+      focusedIndex = focusedStart != -1 ? index.indexOf(state.highlightedSpan, focusedStart) : -1;
+    }
+
+    int candidate;
+    if (forward) {
+      candidate = index.firstIndexStartingAtOrAfter(visibleStart);
+      if (focusedIndex != -1) {
+        candidate = Math.max(candidate, focusedIndex + 1);
+      }
+      if (candidate >= index.size() || index.startAtIndex(candidate) >= visibleEnd) {
+        return false;
+      }
+    } else {
+      candidate = index.lastIndexStartingBefore(visibleEnd);
+      if (focusedIndex != -1) {
+        candidate = Math.min(candidate, focusedIndex - 1);
+      }
+      if (candidate < 0 || index.endAtIndex(candidate) <= visibleStart) {
+        return false;
+      }
+    }
+
+    cancelPendingHighlight(state);
+    removeUrlHighlightColor(textView);
+    highlightUrlAndMeasure(textView, index.spanAtIndex(candidate), text);
+    textView.bringPointIntoView(index.startAtIndex(candidate));
+    return true;
+  }
+
+  /**
+   * Clicks the link highlighted by key navigation, if any.
+   */
+  private boolean clickFocusedLink(TextView textView, Spannable text) {
+    GestureState state = GestureState.of(textView);
+    ClickableSpan focusedSpan = state.highlightedSpan;
+    if (!state.isUrlHighlighted || spanStart(text, focusedSpan) == -1) {
+      return false;
+    }
+
+    LinkMetricsListener metrics = metricsListener;
+    long dispatchStartNanos = metrics != null ? System.nanoTime() : 0;
+    dispatchUrlClick(textView, focusedSpan);
+    if (metrics != null) {
+      metrics.onPhaseMeasured(LinkMetricsListener.PHASE_DISPATCH_CLICK, System.nanoTime() - dispatchStartNanos);
+    }
+    return true;
+  }
+
+  /**
+   * Uses the gesture's state to avoid hit-testing events whose outcome is already known: events that stay within
+   * the touch slop or the bounds of the link touched by ACTION_DOWN, and all events of a gesture that didn't
+   * start over a link.
+   */
+  private ClickableSpan resolveClickableSpanUnderTouch(TextView textView, Spannable text, MotionEvent event, GestureState state) {
+    LinkGestureTracker tracker = state.tracker;
+    int action = event.getAction();
+
+    if (!gestureTrackerEnabled) {
+      return findClickableSpanUnderTouchAndMeasure(textView, text, event);
+    }
+    if (action == MotionEvent.ACTION_DOWN) {
+      ClickableSpan span = findClickableSpanUnderTouchAndMeasure(textView, text, event);
+      float touchSlop = ViewConfiguration.get(textView.getContext()).getScaledTouchSlop();
+      float layoutY = toLayoutY(textView, event);
+      tracker.onDown(toLayoutX(textView, event), layoutY, span, touchSlop);
+      if (span != null) {
+        // Measuring the span's location in the layout allocates. The geometry cache already knows its rectangle.
+        SpanHitTestIndex index = linkGeometryCacheEnabled ? (SpanHitTestIndex) textView.getTag(R.id.bettermovementmethod_hit_test_index) : null;
+        if (index == null || !index.recordLastFoundBounds(span, tracker)) {
+          recordSpanBoundsOnTouchedLine(textView.getLayout(), text, span, layoutY, tracker);
+        }
+      }
+      return span;
+    }
+
+    if (action != MotionEvent.ACTION_MOVE && action != MotionEvent.ACTION_UP) {
+      return null;
+    }
+    if (tracker.state() != LinkGestureTracker.STATE_TRACKING_LINK) {
+      // This gesture can not result in a click.
+      return null;
+    }
+    if (tracker.isOverLinkOnDown(toLayoutX(textView, event), toLayoutY(textView, event))) {
+      return (ClickableSpan) tracker.linkOnDown();
+    }
+    return findClickableSpanUnderTouchAndMeasure(textView, text, event);
+  }
+
+  private ClickableSpan findClickableSpanUnderTouchAndMeasure(TextView textView, Spannable text, MotionEvent event) {
+    LinkMetricsListener metrics = metricsListener;
+    long startNanos = metrics != null ? System.nanoTime() : 0;
+    ClickableSpan span = findClickableSpanUnderTouch(textView, text, event);
+    if (metrics != null) {
+      metrics.onPhaseMeasured(LinkMetricsListener.PHASE_HIT_TEST, System.nanoTime() - startNanos);
+    }
+    return span;
+  }
+
+  /**
+   * Records the rectangle that <var>span</var> occupies on the touched line. A touch target expansion can resolve
+   * a touch to a link on a neighbouring line, in which case the rectangle of its nearest line is recorded instead:
+   * recording the touched line would treat touches anywhere on it as touches on the link.
+   */
+  private static void recordSpanBoundsOnTouchedLine(Layout layout, Spannable text, ClickableSpan span, float layoutY, LinkGestureTracker tracker) {
+    int spanStart = spanStart(text, span);
+    int spanEnd = spanEnd(text, span);
+    int firstLine = layout.getLineForOffset(spanStart);
+    int lastLine = layout.getLineForOffset(spanEnd);
+    if (lastLine > firstLine && spanEnd == layout.getLineStart(lastLine)) {
+      // A span ending exactly at the start of a line does not occupy that line.
+      lastLine--;
+    }
+    int line = Math.max(firstLine, Math.min(lastLine, layout.getLineForVertical((int) layoutY)));
+
+    float lineLeft = layout.getLineLeft(line);
+    float left = line == firstLine ? layout.getPrimaryHorizontal(spanStart) : lineLeft;
+    float right = line == lastLine && spanEnd < layout.getLineEnd(line) ? layout.getPrimaryHorizontal(spanEnd) : lineLeft + layout.getLineWidth(line);
+    tracker.setLinkBounds(left, layout.getLineTop(line), right, layout.getLineBottom(line));
+  }
+
+  private static float toLayoutX(TextView textView, MotionEvent event) {
+    return event.getX() - textView.getTotalPaddingLeft() + textView.getScrollX();
+  }
+
+  private static float toLayoutY(TextView textView, MotionEvent event) {
+    return event.getY() - textView.getTotalPaddingTop() + textView.getScrollY();
+  }
+
   private void cleanupOnTouchUp(TextView textView) {
-    wasLongPressRegistered = false;
-    clickableSpanUnderTouchOnActionDown = null;
+    GestureState state = GestureState.of(textView);
+    state.tracker.reset();
+    state.compactLinksTouchedInGesture.clear();
+    cancelPrefetch(state);
+    state.wasLongPressRegistered = false;
+    state.clickableSpanUnderTouchOnActionDown = null;
+    cancelPendingHighlight(state);
     removeUrlHighlightColor(textView);
     removeLongPressCallback(textView);
   }
 
+  /**
+   * Schedules <var>span</var> (or no span if it's null) to be highlighted on the next frame. Avoids updating the
+   * text's spans, and thus its layout, multiple times within a frame.
+   */
+  private void requestHighlight(GestureState state, ClickableSpan span) {
+    highlightUpdatesRequested++;
+    if (!state.isHighlightUpdatePending && span == state.highlightedSpan) {
+      return;
+    }
+
+    state.pendingHighlightSpan = span;
+    if (!state.isHighlightUpdatePending) {
+      state.isHighlightUpdatePending = true;
+      Choreographer.getInstance().postFrameCallback(state);
+    }
+  }
+
+  void applyPendingHighlight(TextView textView, GestureState state) {
+    ClickableSpan span = state.pendingHighlightSpan;
+    state.isHighlightUpdatePending = false;
+    state.pendingHighlightSpan = null;
+    if (span == state.highlightedSpan || state.wasLongPressRegistered) {
+      return;
+    }
+
+    highlightUpdatesApplied++;
+    removeUrlHighlightColor(textView);
+    Spannable text = (Spannable) textView.getText();
+    if (span != null && spanStart(text, span) != -1) {
+      highlightUrlAndMeasure(textView, span, text);
+    }
+  }
+
+  private void cancelPendingHighlight(GestureState state) {
+    if (state.isHighlightUpdatePending) {
+      state.isHighlightUpdatePending = false;
+      state.pendingHighlightSpan = null;
+      Choreographer.getInstance().removeFrameCallback(state);
+    }
+  }
+
+  private void startPrefetch(TextView textView, GestureState state, ClickableSpan clickableSpan) {
+    final OnLinkPrefetchListener prefetchListener = onLinkPrefetchListener;
+    final String url = state.clickableSpanWithText.reset(textView, clickableSpan, spanTypes.resolve(clickableSpan).textExtractor).text();
+    state.prefetchedUrl = url;
+    state.prefetchListener = prefetchListener;
+    state.prefetchExecutor = prefetchExecutor;
+    prefetchExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        prefetchListener.onPrefetch(url);
+      }
+    });
+  }
+
+  private static void cancelPrefetch(GestureState state) {
+    final String url = state.prefetchedUrl;
+    if (url == null) {
+      return;
+    }
+    final OnLinkPrefetchListener prefetchListener = state.prefetchListener;
+    state.prefetchedUrl = null;
+    state.prefetchListener = null;
+    state.prefetchExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        prefetchListener.onPrefetchCancelled(url);
+      }
+    });
+    state.prefetchExecutor = null;
+  }
+
+  void onLongPressTimerReached(TextView textView, GestureState state) {
+    state.wasLongPressRegistered = true;
+    // The prefetched link is being used.
+    state.prefetchedUrl = null;
+    textView.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+    removeUrlHighlightColor(textView);
+
+    LinkMetricsListener metrics = metricsListener;
+    long dispatchStartNanos = metrics != null ? System.nanoTime() : 0;
+    dispatchUrlLongClick(textView, state.clickableSpanUnderTouchOnActionDown);
+    if (metrics != null) {
+      metrics.onPhaseMeasured(LinkMetricsListener.PHASE_DISPATCH_LONG_CLICK, System.nanoTime() - dispatchStartNanos);
+    }
+  }
+
+  private void highlightUrlAndMeasure(TextView textView, ClickableSpan clickableSpan, Spannable text) {
+    LinkMetricsListener metrics = metricsListener;
+    long startNanos = metrics != null ? System.nanoTime() : 0;
+    highlightUrl(textView, clickableSpan, text);
+    if (metrics != null) {
+      metrics.onPhaseMeasured(LinkMetricsListener.PHASE_HIGHLIGHT, System.nanoTime() - startNanos);
+    }
+  }
+
+  private boolean hasLongClickListener(GestureState state) {
+    return state.onLinkLongClickListener != null || asyncOnLinkLongClickListener != null || onLinkInfoLongClickListener != null
+        || onLinkLongClickListener != null;
+  }
+
+  /**
+   * @return True if a listener handled the click.
+   */
+  private boolean notifyClickListener(TextView textView, ClickableSpanWithText clickableSpanWithText, GestureState state, SpanTypeRegistry.SpanType spanType) {
+    if (spanType.clickListener != null) {
+      return spanType.clickListener.onClick(textView, clickableSpanWithText.text());
+    } else if (state.onLinkClickListener != null) {
+      return state.onLinkClickListener.onClick(textView, clickableSpanWithText.text());
+    } else if (onLinkInfoClickListener != null) {
+      return onLinkInfoClickListener.onClick(textView, linkInfoOf(textView, clickableSpanWithText, state));
+    } else {
+      return onLinkClickListener != null && onLinkClickListener.onClick(textView, clickableSpanWithText.text());
+    }
+  }
+
+  /**
+   * @return True if a listener handled the long-click.
+   */
+  private boolean notifyLongClickListener(TextView textView, ClickableSpanWithText clickableSpanWithText, GestureState state) {
+    if (state.onLinkLongClickListener != null) {
+      return state.onLinkLongClickListener.onLongClick(textView, clickableSpanWithText.text());
+    } else if (onLinkInfoLongClickListener != null) {
+      return onLinkInfoLongClickListener.onLongClick(textView, linkInfoOf(textView, clickableSpanWithText, state));
+    } else {
+      return onLinkLongClickListener != null && onLinkLongClickListener.onLongClick(textView, clickableSpanWithText.text());
+    }
+  }
+
+  /**
+   * Links added by this library carry their own {@link LinkInfo}. For other links, the last created LinkInfo
+   * is remembered so that repeated clicks on the same link do not create new ones.
+   */
+  private static LinkInfo linkInfoOf(TextView textView, ClickableSpanWithText clickableSpanWithText, GestureState state) {
+    ClickableSpan span = clickableSpanWithText.span();
+    if (span instanceof LinkInfoSpan) {
+      return ((LinkInfoSpan) span).linkInfo();
+    }
+
+    Spanned text = (Spanned) textView.getText();
+    int start = text.getSpanStart(span);
+    int end = text.getSpanEnd(span);
+    LinkInfo cached = state.linkInfo;
+    if (state.linkInfoSpan != span || cached.start() != start || cached.end() != end || !cached.url().equals(clickableSpanWithText.text())) {
+      String url = clickableSpanWithText.text();
+      int type = span instanceof URLSpan ? LinkInfo.typeOfUrl(url) : LinkInfo.TYPE_UNKNOWN;
+      state.linkInfo = new LinkInfo(url, type, start, end);
+      state.linkInfoSpan = span;
+    }
+    return state.linkInfo;
+  }
+
   /**
    * Determines the touched location inside the TextView's text and returns the ClickableSpan found under it (if any).
    *
@@ -306,6 +1199,23 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
     touchY += textView.getScrollY();
 
     final Layout layout = textView.getLayout();
+    final LinkMetricsListener metrics = metricsListener;
+    if (linkGeometryCacheEnabled) {
+      Object previousIndex = metrics != null ? textView.getTag(R.id.bettermovementmethod_hit_test_index) : null;
+      SpanHitTestIndex index = SpanHitTestIndex.obtain(textView, text, layout, spanTypes);
+      ClickableSpan span = index.spanAtPoint(touchX, touchY, touchTargetExpansion);
+      if (metrics != null) {
+        metrics.onHitTest(index.lastScanCount(), index == previousIndex);
+      }
+      if (span == null) {
+        int touchedLine = layout.getLineForVertical(touchY);
+        if (touchX >= layout.getLineLeft(touchedLine) && touchX <= layout.getLineLeft(touchedLine) + layout.getLineWidth(touchedLine)) {
+          return compactLinkAt(textView, text, layout.getOffsetForHorizontal(touchedLine, touchX));
+        }
+      }
+      return span;
+    }
+
     final int touchedLine = layout.getLineForVertical(touchY);
     final int touchOffset = layout.getOffsetForHorizontal(touchedLine, touchX);
 
@@ -315,15 +1225,24 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
     touchedLineBounds.bottom = layout.getLineBottom(touchedLine);
 
     if (touchedLineBounds.contains(touchX, touchY)) {
-      // Find a ClickableSpan that lies under the touched area.
-      final Object[] spans = text.getSpans(touchOffset, touchOffset, ClickableSpan.class);
-      for (final Object span : spans) {
-        if (span instanceof ClickableSpan) {
-          return (ClickableSpan) span;
+      if (hitTestIndexEnabled) {
+        Object previousIndex = metrics != null ? textView.getTag(R.id.bettermovementmethod_hit_test_index) : null;
+        SpanHitTestIndex index = SpanHitTestIndex.obtain(textView, text, layout, spanTypes);
+        ClickableSpan span = index.spanAt(touchOffset);
+        if (metrics != null) {
+          metrics.onHitTest(index.lastScanCount(), index == previousIndex);
         }
+        return span != null ? span : compactLinkAt(textView, text, touchOffset);
       }
-      // No ClickableSpan found under the touched location.
-      return null;
+
+      // Find the ClickableSpan with the highest priority that lies under the touched area. This allocates an
+      // array on every call, which the hit-test index avoids.
+      final ClickableSpan[] spans = text.getSpans(touchOffset, touchOffset, ClickableSpan.class);
+      if (metrics != null) {
+        metrics.onHitTest(spans.length, false);
+      }
+      ClickableSpan span = spanTypes.highestPriority(spans);
+      return span != null ? span : compactLinkAt(textView, text, touchOffset);
 
     } else {
       // Touch lies outside the line's horizontal bounds where no spans should exist.
@@ -332,20 +1251,93 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
   }
 
   /**
-   * Adds a background color span at <var>clickableSpan</var>'s location.
+   * Looks up links stored using compact link storage. See {@link #setCompactLinkStorageEnabled(boolean)}. Texts
+   * keep their compact links even if compact link storage gets disabled later, so this doesn't check that setting.
+   */
+  private static ClickableSpan compactLinkAt(TextView textView, Spanned text, int offset) {
+    GestureState state = GestureState.of(textView);
+    CompactLinkSpan compactLinks = state.compactLinks;
+    if (compactLinks == null || !compactLinks.isValidFor(text)) {
+      compactLinks = CompactLinkSpan.of(text);
+      if (compactLinks != state.compactLinks) {
+        state.compactLinks = compactLinks;
+        state.compactLinksTouchedInGesture.clear();
+      }
+    }
+    if (compactLinks == null) {
+      return null;
+    }
+
+    int index = compactLinks.indexAt(offset);
+    if (index == -1) {
+      return null;
+    }
+    CompactLinkSpan.Link link = state.compactLinksTouchedInGesture.get(index);
+    if (link == null) {
+      link = compactLinks.createLink(index);
+      state.compactLinksTouchedInGesture.put(index, link);
+    }
+    return link;
+  }
+
+  /**
+   * Equivalent of {@link Spanned#getSpanStart(Object)} that also supports links resolved from compact link storage,
+   * which aren't present in the text as spans.
+   */
+  private static int spanStart(Spanned text, ClickableSpan span) {
+    return span instanceof CompactLinkSpan.Link ? ((CompactLinkSpan.Link) span).startIn(text) : text.getSpanStart(span);
+  }
+
+  /**
+   * See {@link #spanStart(Spanned, ClickableSpan)}.
+   */
+  private static int spanEnd(Spanned text, ClickableSpan span) {
+    return span instanceof CompactLinkSpan.Link ? ((CompactLinkSpan.Link) span).endIn(text) : text.getSpanEnd(span);
+  }
+
+  /**
+   * Adds a background color span at <var>clickableSpan</var>'s location, or draws its highlight as an overlay
+   * if that's enabled. See {@link #setOverlayHighlightEnabled(boolean)}.
    */
   protected void highlightUrl(TextView textView, ClickableSpan clickableSpan, Spannable text) {
-    if (isUrlHighlighted) {
+    GestureState state = GestureState.of(textView);
+    if (state.isUrlHighlighted) {
       return;
     }
-    isUrlHighlighted = true;
+    state.isUrlHighlighted = true;
+    state.highlightedSpan = clickableSpan;
+
+    int spanStart = spanStart(text, clickableSpan);
+    int spanEnd = spanEnd(text, clickableSpan);
+    int highlightColor = textView.getHighlightColor();
 
-    int spanStart = text.getSpanStart(clickableSpan);
-    int spanEnd = text.getSpanEnd(clickableSpan);
-    BackgroundColorSpan highlightSpan = new BackgroundColorSpan(textView.getHighlightColor());
-    text.setSpan(highlightSpan, spanStart, spanEnd, Spannable.SPAN_INCLUSIVE_INCLUSIVE);
+    if (overlayHighlightEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 && textView.getLayout() != null) {
+      if (state.highlightDrawable == null) {
+        state.highlightDrawable = new LinkHighlightDrawable();
+      }
+      // The overlay is drawn on the same canvas as onDraw(), which is already translated by the scroll offset.
+      // Like onDraw(), only the padding has to be applied.
+      int scrollX = textView.getScrollX();
+      int scrollY = textView.getScrollY();
+      state.highlightDrawable.setBounds(scrollX, scrollY, scrollX + textView.getWidth(), scrollY + textView.getHeight());
+      state.highlightDrawable.setLink(
+          textView.getLayout(),
+          spanStart,
+          spanEnd,
+          highlightColor,
+          textView.getTotalPaddingLeft(),
+          textView.getTotalPaddingTop());
+      textView.getOverlay().add(state.highlightDrawable);
+      state.isHighlightDrawnAsOverlay = true;
+      return;
+    }
+
+    if (state.highlightSpan == null || state.highlightSpan.getBackgroundColor() != highlightColor) {
+      state.highlightSpan = new BackgroundColorSpan(highlightColor);
+    }
+    text.setSpan(state.highlightSpan, spanStart, spanEnd, Spannable.SPAN_INCLUSIVE_INCLUSIVE);
 
-    textView.setTag(R.id.bettermovementmethod_highlight_background_span, highlightSpan);
+    textView.setTag(R.id.bettermovementmethod_highlight_background_span, state.highlightSpan);
 
     Selection.setSelection(text, spanStart, spanEnd);
   }
@@ -354,37 +1346,68 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
    * Removes the highlight color under the Url.
    */
   protected void removeUrlHighlightColor(TextView textView) {
-    if (!isUrlHighlighted) {
+    GestureState state = GestureState.of(textView);
+    if (!state.isUrlHighlighted) {
+      return;
+    }
+    state.isUrlHighlighted = false;
+    state.highlightedSpan = null;
+
+    if (state.isHighlightDrawnAsOverlay && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      state.isHighlightDrawnAsOverlay = false;
+      textView.getOverlay().remove(state.highlightDrawable);
       return;
     }
-    isUrlHighlighted = false;
 
     Spannable text = (Spannable) textView.getText();
-    BackgroundColorSpan highlightSpan = (BackgroundColorSpan) textView.getTag(R.id.bettermovementmethod_highlight_background_span);
-    text.removeSpan(highlightSpan);
+    BackgroundColorSpan appliedHighlightSpan = (BackgroundColorSpan) textView.getTag(R.id.bettermovementmethod_highlight_background_span);
+    text.removeSpan(appliedHighlightSpan);
 
     Selection.removeSelection(text);
   }
 
   protected void startTimerForRegisteringLongClick(TextView textView, LongPressTimer.OnTimerReachedListener longClickListener) {
-    ongoingLongPressTimer = new LongPressTimer();
-    ongoingLongPressTimer.setOnTimerReachedListener(longClickListener);
-    textView.postDelayed(ongoingLongPressTimer, ViewConfiguration.getLongPressTimeout());
+    GestureState state = GestureState.of(textView);
+    state.ongoingLongPressTimer = state.longPressTimer;
+    state.ongoingLongPressTimer.setOnTimerReachedListener(longClickListener);
+    int timeoutMillis = longPressTimeoutMillis != -1 ? longPressTimeoutMillis : ViewConfiguration.getLongPressTimeout();
+    LongPressScheduler.getInstance().schedule(state.ongoingLongPressTimer, timeoutMillis);
   }
 
   /**
    * Remove the long-press detection timer.
    */
   protected void removeLongPressCallback(TextView textView) {
-    if (ongoingLongPressTimer != null) {
-      textView.removeCallbacks(ongoingLongPressTimer);
-      ongoingLongPressTimer = null;
+    GestureState state = GestureState.of(textView);
+    if (state.ongoingLongPressTimer != null) {
+      LongPressScheduler.getInstance().cancel(state.ongoingLongPressTimer);
+      state.ongoingLongPressTimer = null;
     }
   }
 
   protected void dispatchUrlClick(TextView textView, ClickableSpan clickableSpan) {
-    ClickableSpanWithText clickableSpanWithText = ClickableSpanWithText.ofSpan(textView, clickableSpan);
-    boolean handled = onLinkClickListener != null && onLinkClickListener.onClick(textView, clickableSpanWithText.text());
+    GestureState state = GestureState.of(textView);
+    SpanTypeRegistry.SpanType spanType = spanTypes.resolve(clickableSpan);
+    ClickableSpanWithText clickableSpanWithText = state.clickableSpanWithText.reset(textView, clickableSpan, spanType.textExtractor);
+
+    if (asyncOnLinkClickListener != null && spanType.clickListener == null && state.onLinkClickListener == null) {
+      long now = SystemClock.uptimeMillis();
+      if (clickableSpan == state.lastAsyncClickSpan && now - state.lastAsyncClickUptimeMillis < ViewConfiguration.getDoubleTapTimeout()) {
+        // Repeated tap on the same link while the previous click may still be getting handled.
+        return;
+      }
+      state.lastAsyncClickSpan = clickableSpan;
+      state.lastAsyncClickUptimeMillis = now;
+      dispatchToAsyncListener(textView, clickableSpan, clickableSpanWithText.text(), false);
+      return;
+    }
+
+    LinkMetricsListener metrics = metricsListener;
+    long listenerStartNanos = metrics != null ? System.nanoTime() : 0;
+    boolean handled = notifyClickListener(textView, clickableSpanWithText, state, spanType);
+    if (metrics != null) {
+      metrics.onPhaseMeasured(LinkMetricsListener.PHASE_CLICK_LISTENER, System.nanoTime() - listenerStartNanos);
+    }
 
     if (!handled) {
       // Let Android handle this click.
@@ -393,8 +1416,20 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
   }
 
   protected void dispatchUrlLongClick(TextView textView, ClickableSpan clickableSpan) {
-    ClickableSpanWithText clickableSpanWithText = ClickableSpanWithText.ofSpan(textView, clickableSpan);
-    boolean handled = onLinkLongClickListener != null && onLinkLongClickListener.onLongClick(textView, clickableSpanWithText.text());
+    GestureState state = GestureState.of(textView);
+    ClickableSpanWithText clickableSpanWithText = state.clickableSpanWithText.reset(textView, clickableSpan, spanTypes.resolve(clickableSpan).textExtractor);
+
+    if (asyncOnLinkLongClickListener != null && state.onLinkLongClickListener == null) {
+      dispatchToAsyncListener(textView, clickableSpan, clickableSpanWithText.text(), true);
+      return;
+    }
+
+    LinkMetricsListener metrics = metricsListener;
+    long listenerStartNanos = metrics != null ? System.nanoTime() : 0;
+    boolean handled = notifyLongClickListener(textView, clickableSpanWithText, state);
+    if (metrics != null) {
+      metrics.onPhaseMeasured(LinkMetricsListener.PHASE_LONG_CLICK_LISTENER, System.nanoTime() - listenerStartNanos);
+    }
 
     if (!handled) {
       // Let Android handle this long click as a short-click.
@@ -402,8 +1437,45 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
     }
   }
 
+  /**
+   * Runs an async click listener on its executor and posts Android's handling of the URL to the main thread if
+   * the listener doesn't handle it and the link is still present in the TextView's text.
+   */
+  private void dispatchToAsyncListener(final TextView textView, final ClickableSpan clickableSpan, final String url, final boolean isLongClick) {
+    final AsyncOnLinkClickListener clickListener = asyncOnLinkClickListener;
+    final AsyncOnLinkLongClickListener longClickListener = asyncOnLinkLongClickListener;
+    final LinkMetricsListener metrics = metricsListener;
+    clickListenerExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        long listenerStartNanos = metrics != null ? System.nanoTime() : 0;
+        boolean handled = isLongClick ? longClickListener.onLongClick(url) : clickListener.onClick(url);
+        if (metrics != null) {
+          int phase = isLongClick ? LinkMetricsListener.PHASE_LONG_CLICK_LISTENER : LinkMetricsListener.PHASE_CLICK_LISTENER;
+          metrics.onPhaseMeasured(phase, System.nanoTime() - listenerStartNanos);
+        }
+
+        if (!handled) {
+          MAIN_THREAD_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+              // The TextView may have been recycled for a different text while the listener was running.
+              CharSequence text = textView.getText();
+              if (text instanceof Spanned && spanStart((Spanned) text, clickableSpan) != -1) {
+                // Let Android handle this click.
+                clickableSpan.onClick(textView);
+              }
+            }
+          });
+        }
+      }
+    });
+  }
+
   protected static final class LongPressTimer implements Runnable {
     private OnTimerReachedListener onTimerReachedListener;
+    // Managed by LongPressScheduler.
+    long deadlineUptimeMillis;
 
     protected interface OnTimerReachedListener {
       void onTimerReached();
@@ -427,21 +1499,49 @@ public class BetterLinkMovementMethod extends LinkMovementMethod {
     private String text;
 
     protected static ClickableSpanWithText ofSpan(TextView textView, ClickableSpan span) {
-      Spanned s = (Spanned) textView.getText();
-      String text;
-      if (span instanceof URLSpan) {
-        text = ((URLSpan) span).getURL();
+      return new ClickableSpanWithText(null, null).reset(textView, span, null);
+    }
+
+    protected ClickableSpanWithText(ClickableSpan span, String text) {
+      this.span = span;
+      this.text = text;
+    }
+
+    /**
+     * Re-point this wrapper to <var>span</var>. The text of spans that aren't {@link URLSpan}s is only
+     * re-extracted if it has changed since the last call.
+     *
+     * @param textExtractor Extractor registered for the span's type, or null.
+     */
+    ClickableSpanWithText reset(TextView textView, ClickableSpan span, SpanTextExtractor<ClickableSpan> textExtractor) {
+      if (textExtractor != null) {
+        this.text = textExtractor.extractText((Spanned) textView.getText(), span);
+
+      } else if (span instanceof URLSpan) {
+        this.text = ((URLSpan) span).getURL();
+
       } else {
+        Spanned s = (Spanned) textView.getText();
         int start = s.getSpanStart(span);
         int end = s.getSpanEnd(span);
-        text = s.subSequence(start, end).toString();
+        if (span != this.span || !isTextUnchanged(s, start, end)) {
+          this.text = s.subSequence(start, end).toString();
+        }
       }
-      return new ClickableSpanWithText(span, text);
+      this.span = span;
+      return this;
     }
 
-    protected ClickableSpanWithText(ClickableSpan span, String text) {
-      this.span = span;
-      this.text = text;
+    private boolean isTextUnchanged(Spanned s, int start, int end) {
+      if (text == null || text.length() != end - start) {
+        return false;
+      }
+      for (int i = 0; i < text.length(); i++) {
+        if (text.charAt(i) != s.charAt(start + i)) {
+          return false;
+        }
+      }
+      return true;
     }
 
     protected ClickableSpan span() {
@@ -0,0 +1,163 @@
+package me.saket.bettermovementmethod;
+
+import android.text.Editable;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores all links of a text in a single span, using the parallel arrays of {@link LinkRanges}, instead of adding
+ * a {@link LinkInfoSpan} for every link. URLs that occur multiple times share a single String. This avoids
+ * creating a span object and {@link Spanned}'s bookkeeping for every link, which dominates the memory used by
+ * texts with thousands of links.
+ * <p>
+ * Touch handling resolves touches against these arrays and only creates a {@link Link} span for each touched
+ * link. Because no spans are added for individual links, they're not underlined or colored.
+ * <p>
+ * The stored offsets can not follow edits, so the links are ignored once the text is edited. Edits are observed
+ * as a {@link TextWatcher} rather than inferred from the text's length, which doesn't change when a part of the
+ * text is replaced with another of the same length. Copies of the text share this span, so editing a copy also
+ * invalidates the original's links.
+ */
+final class CompactLinkSpan implements TextWatcher {
+
+  private final LinkRanges links;
+  private final int textLength;
+  private boolean edited;
+
+  /**
+   * Replaces any existing compact links of <var>text</var> with <var>links</var>.
+   */
+  static void attach(Spannable text, LinkRanges links) {
+    remove(text);
+    if (links.size() > 0) {
+      text.setSpan(new CompactLinkSpan(deduplicateUrls(links), text.length()), 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+    }
+  }
+
+  static void remove(Spannable text) {
+    for (CompactLinkSpan span : text.getSpans(0, text.length(), CompactLinkSpan.class)) {
+      text.removeSpan(span);
+    }
+  }
+
+  /**
+   * @return The compact links of <var>text</var>, or null if it has none or if it was edited after they were added.
+   */
+  static CompactLinkSpan of(Spanned text) {
+    // Most texts don't have compact links. Check for them without getSpans(), which allocates an array.
+    if (text.nextSpanTransition(-1, text.length() + 1, CompactLinkSpan.class) > text.length()) {
+      return null;
+    }
+    CompactLinkSpan[] spans = text.getSpans(0, text.length(), CompactLinkSpan.class);
+    if (spans.length == 0 || !spans[0].isValidFor(text)) {
+      return null;
+    }
+    return spans[0];
+  }
+
+  private static LinkRanges deduplicateUrls(LinkRanges links) {
+    Map<String, String> urlTable = new HashMap<>();
+    int size = links.size();
+    int[] starts = new int[size];
+    int[] ends = new int[size];
+    String[] urls = new String[size];
+    int[] types = new int[size];
+    for (int i = 0; i < size; i++) {
+      starts[i] = links.start(i);
+      ends[i] = links.end(i);
+      types[i] = links.type(i);
+      String url = links.url(i);
+      String sharedUrl = urlTable.get(url);
+      if (sharedUrl == null) {
+        urlTable.put(url, url);
+        sharedUrl = url;
+      }
+      urls[i] = sharedUrl;
+    }
+    return new LinkRanges(starts, ends, urls, types);
+  }
+
+  private CompactLinkSpan(LinkRanges links, int textLength) {
+    this.links = links;
+    this.textLength = textLength;
+  }
+
+  boolean isValidFor(Spanned text) {
+    return !edited && text.length() == textLength && text.getSpanStart(this) == 0 && text.getSpanEnd(this) == textLength;
+  }
+
+  /**
+   * @return Index of the link present at <var>offset</var>, including a link that ends at it, or -1.
+   */
+  int indexAt(int offset) {
+    // Links are sorted by their start offsets and don't overlap.
+    int low = 0;
+    int high = links.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (links.start(mid) <= offset) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (high < 0 || links.end(high) < offset) {
+      return -1;
+    }
+    return high;
+  }
+
+  /**
+   * Creates a span for the link at <var>index</var>. Callers are responsible for reusing it, so that all events
+   * of a gesture resolve to the same span.
+   */
+  Link createLink(int index) {
+    return new Link(this, index);
+  }
+
+  @Override
+  public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+  }
+
+  @Override
+  public void onTextChanged(CharSequence s, int start, int before, int count) {
+    // Link offsets have shifted or now point at different text.
+    edited = true;
+  }
+
+  @Override
+  public void afterTextChanged(Editable s) {
+  }
+
+  /**
+   * Span created on demand for a single link stored in a {@link CompactLinkSpan}. It's never added to the text.
+   */
+  static final class Link extends LinkInfoSpan {
+    private final CompactLinkSpan owner;
+    private final int index;
+
+    private Link(CompactLinkSpan owner, int index) {
+      super(owner.links.url(index), owner.links.type(index), owner.links.start(index), owner.links.end(index));
+      this.owner = owner;
+      this.index = index;
+    }
+
+    /**
+     * Equivalent of {@link Spanned#getSpanStart(Object)}.
+     */
+    int startIn(Spanned text) {
+      return owner.isValidFor(text) ? owner.links.start(index) : -1;
+    }
+
+    /**
+     * Equivalent of {@link Spanned#getSpanEnd(Object)}.
+     */
+    int endIn(Spanned text) {
+      return owner.isValidFor(text) ? owner.links.end(index) : -1;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package me.saket.bettermovementmethod;
+
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ClickableSpan;
+import android.util.SparseArray;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Touch gesture state of a single TextView. Stored as a tag on the TextView itself so that a single
+ * {@link BetterLinkMovementMethod} can be shared by any number of TextViews without leaking them.
+ */
+final class GestureState implements BetterLinkMovementMethod.LongPressTimer.OnTimerReachedListener, Choreographer.FrameCallback {
+
+  final TextView textView;
+  BetterLinkMovementMethod movementMethod;
+
+  boolean autoLinkMaskCleared;
+  boolean isUrlHighlighted;
+  ClickableSpan highlightedSpan;
+  // Highlight changes requested during ACTION_MOVE are applied once per frame.
+  boolean isHighlightUpdatePending;
+  ClickableSpan pendingHighlightSpan;
+  ClickableSpan clickableSpanUnderTouchOnActionDown;
+  BetterLinkMovementMethod.LongPressTimer ongoingLongPressTimer;
+  final LinkGestureTracker tracker = new LinkGestureTracker();
+
+  // URL passed to OnLinkPrefetchListener#onPrefetch() for the ongoing gesture, if any. Cleared once
+  // the link gets clicked or the prefetch gets cancelled.
+  String prefetchedUrl;
+  BetterLinkMovementMethod.OnLinkPrefetchListener prefetchListener;
+  Executor prefetchExecutor;
+  boolean wasLongPressRegistered;
+
+  // Listeners registered for only this TextView. Take precedence over the movement method's listeners.
+  BetterLinkMovementMethod.OnLinkClickListener onLinkClickListener;
+  BetterLinkMovementMethod.OnLinkLongClickListener onLinkLongClickListener;
+
+  // Last click dispatched to an async click listener, for ignoring repeated taps on the same link.
+  ClickableSpan lastAsyncClickSpan;
+  long lastAsyncClickUptimeMillis;
+
+  // Reused across gestures so that touch events do not allocate in steady state when the link geometry cache is enabled.
+  final BetterLinkMovementMethod.LongPressTimer longPressTimer = new BetterLinkMovementMethod.LongPressTimer();
+  final BetterLinkMovementMethod.ClickableSpanWithText clickableSpanWithText =
+      new BetterLinkMovementMethod.ClickableSpanWithText(null, null);
+  BackgroundColorSpan highlightSpan;
+  // Used instead of highlightSpan when overlay highlights are enabled.
+  LinkHighlightDrawable highlightDrawable;
+  boolean isHighlightDrawnAsOverlay;
+  // Compact links of the TextView's text, if any, and the spans created for links touched by the ongoing gesture,
+  // keyed by their index. Lets a gesture that leaves a link and returns to it resolve to the same span.
+  CompactLinkSpan compactLinks;
+  final SparseArray<CompactLinkSpan.Link> compactLinksTouchedInGesture = new SparseArray<>();
+  // LinkInfo created for the last clicked link that wasn't added by this library.
+  ClickableSpan linkInfoSpan;
+  LinkInfo linkInfo;
+
+  static GestureState of(TextView textView) {
+    GestureState state = (GestureState) textView.getTag(R.id.bettermovementmethod_gesture_state);
+    if (state == null) {
+      state = new GestureState(textView);
+      textView.setTag(R.id.bettermovementmethod_gesture_state, state);
+    }
+    return state;
+  }
+
+  private GestureState(TextView textView) {
+    this.textView = textView;
+  }
+
+  @Override
+  public void onTimerReached() {
+    movementMethod.onLongPressTimerReached(textView, this);
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    movementMethod.applyPendingHighlight(textView, this);
+  }
+}
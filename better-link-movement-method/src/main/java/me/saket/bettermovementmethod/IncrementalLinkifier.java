@@ -0,0 +1,155 @@
+package me.saket.bettermovementmethod;
+
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.text.style.URLSpan;
+import android.widget.TextView;
+
+/**
+ * Detects links again only in the edited region of a TextView's text whenever it changes, instead of in the
+ * entire text. The region is widened to the nearest whitespace and to any links it overlaps, so appending
+ * text to a long chat or log costs time proportional to the appended text.
+ * <p>
+ * Phone numbers can consist of multiple words, e.g., "+1 650 555 0123". The region is also widened over adjacent
+ * words made of phone number characters, up to the longest number a phone number can have. Like
+ * {@link ViewportLinkifier}, other links spanning multiple words (like map addresses) may be missed if only a
+ * part of them is edited.
+ */
+final class IncrementalLinkifier implements TextWatcher {
+
+  // Phone numbers have at most 15 digits, so they can't span more words than that.
+  private static final int MAX_PHONE_NUMBER_WORDS = 15;
+
+  private final int linkifyMask;
+  // Region [editStart, editEnd) of the text that was changed by the ongoing edit.
+  private int editStart;
+  private int editEnd;
+
+  static void attach(TextView textView, int linkifyMask) {
+    IncrementalLinkifier previous = (IncrementalLinkifier) textView.getTag(R.id.bettermovementmethod_incremental_linkifier);
+    if (previous != null) {
+      textView.removeTextChangedListener(previous);
+    }
+
+    IncrementalLinkifier linkifier = new IncrementalLinkifier(linkifyMask);
+    textView.setTag(R.id.bettermovementmethod_incremental_linkifier, linkifier);
+    // TextViews make their text Editable once they have a TextWatcher.
+    textView.addTextChangedListener(linkifier);
+    // Links are updated by editing their spans, which compact links don't have.
+    Linkifier.addLinkSpans(textView, linkifyMask);
+  }
+
+  private IncrementalLinkifier(int linkifyMask) {
+    this.linkifyMask = linkifyMask;
+  }
+
+  @Override
+  public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+  }
+
+  @Override
+  public void onTextChanged(CharSequence s, int start, int before, int count) {
+    editStart = start;
+    editEnd = start + count;
+  }
+
+  @Override
+  public void afterTextChanged(Editable text) {
+    int regionStart = previousWhitespace(text, Math.min(editStart, text.length()));
+    int regionEnd = nextWhitespace(text, Math.min(editEnd, text.length()));
+    regionStart = previousPhoneNumberWords(text, regionStart);
+    regionEnd = nextPhoneNumberWords(text, regionEnd);
+
+    // Links that overlap the region are detected again, like Linkify would when linkifying the entire text.
+    URLSpan[] oldLinks = text.getSpans(regionStart, regionEnd, URLSpan.class);
+    for (URLSpan oldLink : oldLinks) {
+      regionStart = Math.min(regionStart, text.getSpanStart(oldLink));
+      regionEnd = Math.max(regionEnd, text.getSpanEnd(oldLink));
+      text.removeSpan(oldLink);
+    }
+    if (oldLinks.length > 0) {
+      regionStart = previousWhitespace(text, regionStart);
+      regionEnd = nextWhitespace(text, regionEnd);
+    }
+    if (regionStart == regionEnd) {
+      return;
+    }
+
+    LinkRanges links = Linkifier.detectLinks(TextUtils.substring(text, regionStart, regionEnd), linkifyMask);
+    for (int i = 0; i < links.size(); i++) {
+      Linkifier.addLink(text, links.url(i), links.type(i), regionStart + links.start(i), regionStart + links.end(i));
+    }
+  }
+
+  private static int previousWhitespace(CharSequence text, int offset) {
+    while (offset > 0 && !Character.isWhitespace(text.charAt(offset - 1))) {
+      offset--;
+    }
+    return offset;
+  }
+
+  private static int nextWhitespace(CharSequence text, int offset) {
+    int length = text.length();
+    while (offset < length && !Character.isWhitespace(text.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+
+  /**
+   * @param offset Start of a word.
+   * @return Start of the run of phone number words that precede <var>offset</var>, or <var>offset</var> if there's none.
+   */
+  private static int previousPhoneNumberWords(CharSequence text, int offset) {
+    for (int i = 0; i < MAX_PHONE_NUMBER_WORDS; i++) {
+      int wordEnd = offset;
+      while (wordEnd > 0 && Character.isWhitespace(text.charAt(wordEnd - 1))) {
+        wordEnd--;
+      }
+      int wordStart = previousWhitespace(text, wordEnd);
+      if (wordStart == wordEnd || !isPhoneNumberWord(text, wordStart, wordEnd)) {
+        break;
+      }
+      offset = wordStart;
+    }
+    return offset;
+  }
+
+  /**
+   * @param offset End of a word.
+   * @return End of the run of phone number words that follow <var>offset</var>, or <var>offset</var> if there's none.
+   */
+  private static int nextPhoneNumberWords(CharSequence text, int offset) {
+    int length = text.length();
+    for (int i = 0; i < MAX_PHONE_NUMBER_WORDS; i++) {
+      int wordStart = offset;
+      while (wordStart < length && Character.isWhitespace(text.charAt(wordStart))) {
+        wordStart++;
+      }
+      int wordEnd = nextWhitespace(text, wordStart);
+      if (wordStart == wordEnd || !isPhoneNumberWord(text, wordStart, wordEnd)) {
+        break;
+      }
+      offset = wordEnd;
+    }
+    return offset;
+  }
+
+  /**
+   * Whether [<var>start</var>, <var>end</var>) contains at least one digit and only characters that phone numbers
+   * are written with.
+   */
+  private static boolean isPhoneNumberWord(CharSequence text, int start, int end) {
+    boolean hasDigit = false;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        hasDigit = true;
+      } else if (c != '+' && c != '-' && c != '.' && c != '(' && c != ')') {
+        return false;
+      }
+    }
+    return hasDigit;
+  }
+}
@@ -0,0 +1,57 @@
+package me.saket.bettermovementmethod;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.text.Layout;
+
+/**
+ * Draws a link's highlight as an overlay on its TextView so that highlighting does not have to add spans to
+ * the TextView's text. The link's shape is obtained from {@link Layout#getSelectionPath(int, int, Path)}.
+ */
+final class LinkHighlightDrawable extends Drawable {
+
+  private final Path path = new Path();
+  private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private float translateX;
+  private float translateY;
+
+  /**
+   * @param translateX Horizontal position of the layout inside the TextView's scrolled content, i.e., its padding.
+   * @param translateY Vertical position of the layout inside the TextView's scrolled content.
+   */
+  void setLink(Layout layout, int start, int end, int color, float translateX, float translateY) {
+    path.reset();
+    layout.getSelectionPath(start, end, path);
+    paint.setColor(color);
+    this.translateX = translateX;
+    this.translateY = translateY;
+    invalidateSelf();
+  }
+
+  @Override
+  public void draw(Canvas canvas) {
+    canvas.save();
+    canvas.translate(translateX, translateY);
+    canvas.drawPath(path, paint);
+    canvas.restore();
+  }
+
+  @Override
+  public void setAlpha(int alpha) {
+    paint.setAlpha(alpha);
+  }
+
+  @Override
+  public void setColorFilter(ColorFilter colorFilter) {
+    paint.setColorFilter(colorFilter);
+  }
+
+  @Override
+  public int getOpacity() {
+    return PixelFormat.TRANSLUCENT;
+  }
+}
@@ -0,0 +1,144 @@
+package me.saket.bettermovementmethod;
+
+/**
+ * Immutable description of a link, passed to {@link BetterLinkMovementMethod.OnLinkInfoClickListener} and
+ * {@link BetterLinkMovementMethod.OnLinkInfoLongClickListener}. For links added by this library, it's created
+ * once per link and reused for every click. The URL's scheme and host are parsed lazily on first access.
+ */
+public final class LinkInfo {
+
+  /** For links that were not added by a linkify pass and whose URL does not identify their type. */
+  public static final int TYPE_UNKNOWN = 0;
+  public static final int TYPE_WEB_URL = LinkDetector.WEB_URLS;
+  public static final int TYPE_EMAIL_ADDRESS = LinkDetector.EMAIL_ADDRESSES;
+  public static final int TYPE_PHONE_NUMBER = LinkDetector.PHONE_NUMBERS;
+  public static final int TYPE_MAP_ADDRESS = LinkDetector.MAP_ADDRESSES;
+
+  private static final String NOT_PARSED = new String("");
+
+  private final String url;
+  private final int type;
+  private final int start;
+  private final int end;
+  private String scheme = NOT_PARSED;
+  private String host = NOT_PARSED;
+
+  LinkInfo(String url, int type, int start, int end) {
+    this.url = url;
+    this.type = type;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * The link's URL, or its text if the link isn't a {@link android.text.style.URLSpan}.
+   */
+  public String url() {
+    return url;
+  }
+
+  /**
+   * @return One of {@link #TYPE_WEB_URL}, {@link #TYPE_EMAIL_ADDRESS}, {@link #TYPE_PHONE_NUMBER},
+   * {@link #TYPE_MAP_ADDRESS} or {@link #TYPE_UNKNOWN}.
+   */
+  public int type() {
+    return type;
+  }
+
+  /**
+   * Start offset of the link in its text, at the time the link was added.
+   */
+  public int start() {
+    return start;
+  }
+
+  /**
+   * End offset of the link in its text, at the time the link was added.
+   */
+  public int end() {
+    return end;
+  }
+
+  /**
+   * @return The URL's scheme in lower case (e.g., "https", "mailto" or "tel"), or null if it has none.
+   */
+  public String scheme() {
+    if (scheme == NOT_PARSED) {
+      scheme = parseScheme(url);
+    }
+    return scheme;
+  }
+
+  /**
+   * @return The URL's host (e.g., "saket.me" for "https://saket.me/about" and "example.com" for
+   * "mailto:jane@example.com"), or null if it has none.
+   */
+  public String host() {
+    if (host == NOT_PARSED) {
+      host = parseHost(url, scheme());
+    }
+    return host;
+  }
+
+  @Override
+  public String toString() {
+    return "LinkInfo{url=" + url + ", type=" + type + ", start=" + start + ", end=" + end + "}";
+  }
+
+  /**
+   * Linkify does not report which of its patterns matched a link, but each of them produces a distinct scheme.
+   */
+  static int typeOfUrl(String url) {
+    if (url.startsWith("tel:")) {
+      return TYPE_PHONE_NUMBER;
+    } else if (url.startsWith("mailto:")) {
+      return TYPE_EMAIL_ADDRESS;
+    } else if (url.startsWith("geo:")) {
+      return TYPE_MAP_ADDRESS;
+    } else {
+      return TYPE_WEB_URL;
+    }
+  }
+
+  private static String parseScheme(String url) {
+    for (int i = 0; i < url.length(); i++) {
+      char c = url.charAt(i);
+      if (c == ':') {
+        return i > 0 ? url.substring(0, i).toLowerCase() : null;
+      }
+      boolean isSchemeChar = Character.isLetter(c) || (i > 0 && (Character.isDigit(c) || c == '+' || c == '-' || c == '.'));
+      if (!isSchemeChar) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private static String parseHost(String url, String scheme) {
+    if (scheme == null) {
+      return null;
+    }
+
+    int start = scheme.length() + 1;
+    if (url.startsWith("//", start)) {
+      start += 2;
+    } else if (!"mailto".equals(scheme)) {
+      // Opaque URIs like "tel:" don't have hosts.
+      return null;
+    }
+
+    int end = start;
+    while (end < url.length() && "/?#".indexOf(url.charAt(end)) == -1) {
+      end++;
+    }
+    int userInfoEnd = url.lastIndexOf('@', end - 1);
+    if (userInfoEnd >= start) {
+      start = userInfoEnd + 1;
+    }
+    int portStart = url.indexOf(':', start);
+    if (portStart != -1 && portStart < end) {
+      end = portStart;
+    }
+    return start < end ? url.substring(start, end) : null;
+  }
+}
@@ -0,0 +1,28 @@
+package me.saket.bettermovementmethod;
+
+import android.text.style.URLSpan;
+
+/**
+ * URLSpan added by this library's linkify methods. Remembers the type of link that was detected.
+ */
+class LinkInfoSpan extends URLSpan {
+
+  private final int type;
+  private final int start;
+  private final int end;
+  private LinkInfo linkInfo;
+
+  LinkInfoSpan(String url, int type, int start, int end) {
+    super(url);
+    this.type = type;
+    this.start = start;
+    this.end = end;
+  }
+
+  LinkInfo linkInfo() {
+    if (linkInfo == null) {
+      linkInfo = new LinkInfo(getURL(), type, start, end);
+    }
+    return linkInfo;
+  }
+}
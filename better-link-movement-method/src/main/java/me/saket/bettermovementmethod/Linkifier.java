@@ -0,0 +1,222 @@
+package me.saket.bettermovementmethod;
+
+import android.text.Editable;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.URLSpan;
+import android.text.util.Linkify;
+import android.widget.TextView;
+
+import java.util.Arrays;
+
+/**
+ * Detects links in a text without touching the TextView it belongs to, so that detection can be moved off the
+ * main thread and its results applied separately.
+ */
+final class Linkifier {
+
+  private static volatile LinkDetector linkDetector = new LinkifyLinkDetector();
+  private static volatile boolean compactLinkStorageEnabled;
+  private static long spanChangesAvoidedByBulkLinkify;
+
+  private Linkifier() {
+  }
+
+  static void setLinkDetector(LinkDetector detector) {
+    linkDetector = detector;
+    // Cached links were found by the previous detector.
+    LinkDetectionCache.getInstance().clear();
+  }
+
+  static void setCompactLinkStorageEnabled(boolean enabled) {
+    compactLinkStorageEnabled = enabled;
+  }
+
+  static boolean isCompactLinkStorageEnabled() {
+    return compactLinkStorageEnabled;
+  }
+
+  /**
+   * Equivalent of {@link Linkify#addLinks(TextView, int)} that uses the current {@link LinkDetector} and reuses
+   * links detected previously for the same text when {@link LinkDetectionCache} is enabled.
+   */
+  static void addLinks(TextView textView, int linkifyMask) {
+    addLinks(textView, linkifyMask, compactLinkStorageEnabled);
+  }
+
+  /**
+   * Like {@link #addLinks(TextView, int)}, but always stores links as spans, ignoring
+   * {@link #setCompactLinkStorageEnabled(boolean)}. For texts that are going to be edited, because compact links
+   * are discarded on the first edit.
+   */
+  static void addLinkSpans(TextView textView, int linkifyMask) {
+    addLinks(textView, linkifyMask, false);
+  }
+
+  private static void addLinks(TextView textView, int linkifyMask, boolean compact) {
+    LinkDetectionCache cache = LinkDetectionCache.getInstance();
+    if (!cache.isEnabled() && !compact && linkDetector instanceof LinkifyLinkDetector) {
+      Linkify.addLinks(textView, linkifyMask);
+      return;
+    }
+
+    if (!(textView.getText() instanceof Spannable)) {
+      textView.setText(textView.getText(), TextView.BufferType.SPANNABLE);
+    }
+    Spannable text = (Spannable) textView.getText();
+    LinkRanges links = detectLinksWithCache(text, linkifyMask);
+    replaceLinks(text, links, compact);
+  }
+
+  /**
+   * Replaces the links of <var>textView</var>'s text with <var>links</var> without detecting any links.
+   */
+  static void applyLinks(TextView textView, LinkRanges links) {
+    if (!(textView.getText() instanceof Spannable)) {
+      textView.setText(textView.getText(), TextView.BufferType.SPANNABLE);
+    }
+    Spannable text = (Spannable) textView.getText();
+    for (int i = 0; i < links.size(); i++) {
+      int start = links.start(i);
+      int end = links.end(i);
+      if (start < 0 || end < start) {
+        throw new IllegalArgumentException("Invalid link range: [" + start + ", " + end + ")");
+      }
+      if (end > text.length()) {
+        throw new IllegalArgumentException("Link at [" + start + ", " + end + ") exceeds the text's length: " + text.length());
+      }
+      if (i > 0 && start < links.start(i - 1)) {
+        throw new IllegalArgumentException("Links must be sorted by their start offsets: [" + start + ", " + end + ") follows a link at " + links.start(i - 1));
+      }
+    }
+    replaceLinks(text, links);
+  }
+
+  /**
+   * Like {@link #addLinks(TextView, int)}, but replaces the links on a copy of the TextView's text and sets the copy
+   * on the TextView in a single operation. The TextView then isn't notified of every removed and added link span,
+   * and lays out its text only once. Must be called on the main thread.
+   */
+  static void addLinksInBulk(TextView textView, int linkifyMask) {
+    CharSequence text = textView.getText();
+    LinkRanges links = detectLinksWithCache(text, linkifyMask);
+
+    // SpannableStringBuilder does not copy NoCopySpans, like the TextView's own span watchers.
+    SpannableStringBuilder copy = new SpannableStringBuilder(text);
+    int removedLinkCount = copy.getSpans(0, copy.length(), URLSpan.class).length;
+    replaceLinks(copy, links);
+    int addedLinkCount = compactLinkStorageEnabled ? (links.size() > 0 ? 1 : 0) : links.size();
+
+    textView.setText(copy, text instanceof Editable ? TextView.BufferType.EDITABLE : TextView.BufferType.SPANNABLE);
+    spanChangesAvoidedByBulkLinkify += removedLinkCount + addedLinkCount;
+  }
+
+  static long spanChangesAvoidedByBulkLinkify() {
+    return spanChangesAvoidedByBulkLinkify;
+  }
+
+  /**
+   * Equivalent of {@link Linkify#addLinks(Spannable, int)}. See {@link #addLinks(TextView, int)}.
+   */
+  static void addLinks(Spannable text, int linkifyMask) {
+    if (!LinkDetectionCache.getInstance().isEnabled() && !compactLinkStorageEnabled && linkDetector instanceof LinkifyLinkDetector) {
+      Linkify.addLinks(text, linkifyMask);
+      return;
+    }
+
+    LinkRanges links = detectLinksWithCache(text, linkifyMask);
+    replaceLinks(text, links);
+  }
+
+  /**
+   * Like {@link #detectLinks(CharSequence, int)}, but goes through {@link LinkDetectionCache} if it's enabled.
+   */
+  static LinkRanges detectLinksWithCache(CharSequence text, int linkifyMask) {
+    LinkDetectionCache cache = LinkDetectionCache.getInstance();
+    return cache.isEnabled()
+        ? cache.getOrDetect(text, linkifyMask, linkDetector)
+        : detectLinks(text, linkifyMask);
+  }
+
+  /**
+   * Finds links using the current {@link LinkDetector}.
+   */
+  static LinkRanges detectLinks(CharSequence text, int linkifyMask) {
+    return linkDetector.detect(text, linkifyMask);
+  }
+
+  /**
+   * Runs {@link Linkify} on a span-less copy of <var>text</var>. Safe to call from any thread as long as
+   * <var>text</var> is not modified concurrently.
+   */
+  static LinkRanges detectLinksUsingLinkify(CharSequence text, int linkifyMask) {
+    Spannable copy = new SpannableString(text.toString());
+    if (!Linkify.addLinks(copy, linkifyMask)) {
+      return LinkRanges.EMPTY;
+    }
+
+    URLSpan[] spans = copy.getSpans(0, copy.length(), URLSpan.class);
+    long[] sortKeys = new long[spans.length];
+    for (int i = 0; i < spans.length; i++) {
+      sortKeys[i] = ((long) copy.getSpanStart(spans[i]) << 32) | i;
+    }
+    Arrays.sort(sortKeys);
+
+    int[] starts = new int[spans.length];
+    int[] ends = new int[spans.length];
+    String[] urls = new String[spans.length];
+    int[] types = new int[spans.length];
+    for (int i = 0; i < spans.length; i++) {
+      URLSpan span = spans[(int) sortKeys[i]];
+      starts[i] = copy.getSpanStart(span);
+      ends[i] = copy.getSpanEnd(span);
+      urls[i] = span.getURL();
+      types[i] = LinkInfo.typeOfUrl(urls[i]);
+    }
+    return new LinkRanges(starts, ends, urls, types);
+  }
+
+  /**
+   * Removes all {@link URLSpan}s from <var>text</var>, like {@link Linkify} does before adding new links.
+   */
+  static void removeLinks(Spannable text) {
+    URLSpan[] oldSpans = text.getSpans(0, text.length(), URLSpan.class);
+    for (URLSpan oldSpan : oldSpans) {
+      text.removeSpan(oldSpan);
+    }
+    CompactLinkSpan.remove(text);
+  }
+
+  /**
+   * Replaces all links of <var>text</var> with <var>links</var>, stored as spans or as a {@link CompactLinkSpan}.
+   */
+  static void replaceLinks(Spannable text, LinkRanges links) {
+    replaceLinks(text, links, compactLinkStorageEnabled);
+  }
+
+  private static void replaceLinks(Spannable text, LinkRanges links, boolean compact) {
+    removeLinks(text);
+    if (compact) {
+      CompactLinkSpan.attach(text, links);
+    } else {
+      applyLinks(text, links, 0, links.size());
+    }
+  }
+
+  /**
+   * Adds links at indices [<var>from</var>, <var>to</var>) of <var>ranges</var> to <var>text</var>.
+   */
+  static void applyLinks(Spannable text, LinkRanges ranges, int from, int to) {
+    for (int i = from; i < to; i++) {
+      addLink(text, ranges.url(i), ranges.type(i), ranges.start(i), ranges.end(i));
+    }
+  }
+
+  static URLSpan addLink(Spannable text, String url, int type, int start, int end) {
+    URLSpan span = new LinkInfoSpan(url, type, start, end);
+    text.setSpan(span, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+    return span;
+  }
+}
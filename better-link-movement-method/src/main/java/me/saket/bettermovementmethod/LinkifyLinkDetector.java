@@ -0,0 +1,14 @@
+package me.saket.bettermovementmethod;
+
+import android.text.util.Linkify;
+
+/**
+ * A {@link LinkDetector} that uses {@link Linkify}. This is the default detector.
+ */
+public final class LinkifyLinkDetector implements LinkDetector {
+
+  @Override
+  public LinkRanges detect(CharSequence text, int linkifyMask) {
+    return Linkifier.detectLinksUsingLinkify(text, linkifyMask);
+  }
+}
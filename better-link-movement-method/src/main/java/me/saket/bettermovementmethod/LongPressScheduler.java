@@ -0,0 +1,98 @@
+package me.saket.bettermovementmethod;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+/**
+ * Schedules long-press timers of all TextViews using at most one message in the main Looper's queue, instead of
+ * posting and removing a Runnable for every touched link.
+ * <p>
+ * The message is scheduled for the earliest deadline. Cancelling a timer does not remove the message: if it
+ * fires without any timers being due, it's either rescheduled for the next deadline or dropped. Because touches
+ * happen in order and usually share the same timeout, deadlines rarely move earlier, so the message is rarely
+ * re-posted even when links are touched and released in quick succession.
+ */
+final class LongPressScheduler implements Handler.Callback {
+
+  private static final int MSG_DEADLINE = 1;
+
+  private final Handler handler = new Handler(Looper.getMainLooper(), this);
+  private final ArrayList<BetterLinkMovementMethod.LongPressTimer> timers = new ArrayList<>();
+  // Timers that are due are copied here before running, because running them can schedule or cancel timers.
+  private final ArrayList<BetterLinkMovementMethod.LongPressTimer> dueTimers = new ArrayList<>();
+  private long scheduledMessageTime = Long.MAX_VALUE;
+
+  private static final class SingleInstanceHolder {
+    static final LongPressScheduler INSTANCE = new LongPressScheduler();
+  }
+
+  /**
+   * Must be called on the main thread.
+   */
+  static LongPressScheduler getInstance() {
+    return SingleInstanceHolder.INSTANCE;
+  }
+
+  private LongPressScheduler() {
+  }
+
+  /**
+   * Run <var>timer</var> after <var>delayMillis</var>. Replaces its previous deadline if it's already scheduled.
+   */
+  void schedule(BetterLinkMovementMethod.LongPressTimer timer, long delayMillis) {
+    timer.deadlineUptimeMillis = SystemClock.uptimeMillis() + delayMillis;
+    if (!timers.contains(timer)) {
+      timers.add(timer);
+    }
+    if (timer.deadlineUptimeMillis < scheduledMessageTime) {
+      scheduleMessage(timer.deadlineUptimeMillis);
+    }
+  }
+
+  void cancel(BetterLinkMovementMethod.LongPressTimer timer) {
+    timers.remove(timer);
+  }
+
+  /**
+   * Number of timers that are scheduled but haven't run yet.
+   */
+  int queuedTimerCount() {
+    return timers.size();
+  }
+
+  @Override
+  public boolean handleMessage(Message message) {
+    scheduledMessageTime = Long.MAX_VALUE;
+
+    long now = SystemClock.uptimeMillis();
+    long nextDeadline = Long.MAX_VALUE;
+    for (int i = timers.size() - 1; i >= 0; i--) {
+      BetterLinkMovementMethod.LongPressTimer timer = timers.get(i);
+      if (timer.deadlineUptimeMillis <= now) {
+        timers.remove(i);
+        dueTimers.add(timer);
+      } else {
+        nextDeadline = Math.min(nextDeadline, timer.deadlineUptimeMillis);
+      }
+    }
+    if (nextDeadline != Long.MAX_VALUE) {
+      scheduleMessage(nextDeadline);
+    }
+
+    for (int i = dueTimers.size() - 1; i >= 0; i--) {
+      dueTimers.get(i).run();
+    }
+    dueTimers.clear();
+    return true;
+  }
+
+  private void scheduleMessage(long uptimeMillis) {
+    handler.removeMessages(MSG_DEADLINE);
+    handler.sendEmptyMessageAtTime(MSG_DEADLINE, uptimeMillis);
+    scheduledMessageTime = uptimeMillis;
+  }
+}
@@ -0,0 +1,91 @@
+package me.saket.bettermovementmethod;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/**
+ * Registers a shared {@link BetterLinkMovementMethod} on TextViews of a recycling container (RecyclerView,
+ * ListView, etc.) as their item Views get added to the container for the first time. Because item Views are
+ * reused, each item View's hierarchy is walked only once. Links are detected again whenever a TextView's text
+ * is changed, without any work on the adapter's part.
+ */
+final class RecyclingContainerLinkifier implements ViewGroup.OnHierarchyChangeListener {
+
+  private final int linkifyMask;
+  private final BetterLinkMovementMethod movementMethod;
+  private final LinkifyTextWatcher textWatcher;
+
+  static void register(ViewGroup container, int linkifyMask, BetterLinkMovementMethod movementMethod) {
+    RecyclingContainerLinkifier linkifier = new RecyclingContainerLinkifier(linkifyMask, movementMethod);
+    container.setOnHierarchyChangeListener(linkifier);
+    for (int i = 0; i < container.getChildCount(); i++) {
+      linkifier.onChildViewAdded(container, container.getChildAt(i));
+    }
+  }
+
+  private RecyclingContainerLinkifier(int linkifyMask, BetterLinkMovementMethod movementMethod) {
+    this.linkifyMask = linkifyMask;
+    this.movementMethod = movementMethod;
+    this.textWatcher = new LinkifyTextWatcher(linkifyMask);
+  }
+
+  @Override
+  public void onChildViewAdded(View parent, View child) {
+    if (child.getTag(R.id.bettermovementmethod_recycling_container_linkifier) == this) {
+      // This item View was registered when it was added previously.
+      return;
+    }
+    child.setTag(R.id.bettermovementmethod_recycling_container_linkifier, this);
+    register(child);
+  }
+
+  @Override
+  public void onChildViewRemoved(View parent, View child) {
+  }
+
+  private void register(View view) {
+    if (view instanceof ViewGroup) {
+      ViewGroup viewGroup = (ViewGroup) view;
+      for (int i = 0; i < viewGroup.getChildCount(); i++) {
+        register(viewGroup.getChildAt(i));
+      }
+
+    } else if (view instanceof TextView) {
+      TextView textView = (TextView) view;
+      textView.setMovementMethod(movementMethod);
+
+      if (linkifyMask != BetterLinkMovementMethod.LINKIFY_NONE) {
+        textView.addTextChangedListener(textWatcher);
+        // For text that was set before this TextView was added to the container.
+        Linkifier.addLinks(textView, linkifyMask);
+      }
+    }
+  }
+
+  /**
+   * Detects links every time the text of a TextView changes.
+   */
+  static final class LinkifyTextWatcher implements TextWatcher {
+    private final int linkifyMask;
+
+    LinkifyTextWatcher(int linkifyMask) {
+      this.linkifyMask = linkifyMask;
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+    }
+
+    @Override
+    public void afterTextChanged(Editable text) {
+      Linkifier.addLinks(text, linkifyMask);
+    }
+  }
+}
@@ -0,0 +1,319 @@
+package me.saket.bettermovementmethod;
+
+import android.text.Editable;
+import android.text.Layout;
+import android.text.NoCopySpan;
+import android.text.SpanWatcher;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.text.style.ClickableSpan;
+import android.widget.TextView;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A precomputed lookup table of all {@link ClickableSpan}s in a TextView's text, so that hit-testing a touch
+ * offset does not require {@link Spanned#getSpans(int, int, Class)} on every {@link android.view.MotionEvent}.
+ * <p>
+ * Span ranges are stored in a {@link SpanRangeIndex} and looked up using a binary search. The index is built
+ * once per (TextView, text, Layout) and marks itself as stale when spans are added/removed or when the text
+ * is edited.
+ * <p>
+ * The rectangles occupied by each span (one per line for links that wrap across lines) are also computed
+ * on demand, so that touches can be resolved without converting them to character offsets first.
+ * <p>
+ * The index is attached to the text as a {@link NoCopySpan} for getting notified of changes. Copies of the text,
+ * e.g., made by {@code setText()} for editable texts, must not carry it along because it refers to the original
+ * text and its Layout.
+ * <p>
+ * Because the index stays attached to the text until the next touch finds it stale, replacing the TextView's
+ * text would otherwise keep the old Layout reachable for as long as the app holds on to the old text. The
+ * Layout is therefore referenced weakly: an index whose Layout has been collected can't be valid anyway.
+ */
+final class SpanHitTestIndex implements SpanWatcher, TextWatcher, NoCopySpan {
+
+  private static final ClickableSpan[] EMPTY_SPANS = new ClickableSpan[0];
+
+  private final Spannable text;
+  private final WeakReference<Layout> layoutRef;
+  private final SpanTypeRegistry spanTypes;
+  private final int spanTypesVersion;
+  private boolean stale;
+
+  private SpanRangeIndex ranges = new SpanRangeIndex(new int[0], new int[0], new int[0]);
+  // Spans in the same order as ranges.
+  private ClickableSpan[] spans = EMPTY_SPANS;
+  private int lastScanCount;
+
+  // Rectangles occupied by spans, stored as [left, top, right, bottom] quadruples
+  // in layout coordinates. Null until first needed.
+  private float[] rects;
+  // Index of the span in spans[] that each rectangle belongs to.
+  private int[] rectSpanIndices;
+  // Rectangle in which the last call to spanAtPoint() found its span, or -1.
+  private int lastFoundRect = -1;
+
+  /**
+   * Returns a cached index for <var>textView</var> or builds a new one if the text or its layout has changed.
+   */
+  static SpanHitTestIndex obtain(TextView textView, Spannable text, Layout layout, SpanTypeRegistry spanTypes) {
+    SpanHitTestIndex index = (SpanHitTestIndex) textView.getTag(R.id.bettermovementmethod_hit_test_index);
+    if (index != null && index.isValidFor(text, layout, spanTypes)) {
+      return index;
+    }
+
+    if (index != null) {
+      index.detach();
+    }
+    index = new SpanHitTestIndex(text, layout, spanTypes);
+    index.rebuild();
+    textView.setTag(R.id.bettermovementmethod_hit_test_index, index);
+    return index;
+  }
+
+  private SpanHitTestIndex(Spannable text, Layout layout, SpanTypeRegistry spanTypes) {
+    this.text = text;
+    this.layoutRef = new WeakReference<>(layout);
+    this.spanTypes = spanTypes;
+    this.spanTypesVersion = spanTypes.version();
+  }
+
+  private boolean isValidFor(Spannable text, Layout layout, SpanTypeRegistry spanTypes) {
+    return !stale && this.text == text && layoutRef.get() == layout && this.spanTypes == spanTypes && spanTypesVersion == spanTypes.version();
+  }
+
+  private void rebuild() {
+    ClickableSpan[] foundSpans = text.getSpans(0, text.length(), ClickableSpan.class);
+    int count = foundSpans.length;
+
+    int[] starts = new int[count];
+    int[] ends = new int[count];
+    int[] priorities = new int[count];
+    for (int i = 0; i < count; i++) {
+      starts[i] = text.getSpanStart(foundSpans[i]);
+      ends[i] = text.getSpanEnd(foundSpans[i]);
+      priorities[i] = spanTypes.priorityOf(foundSpans[i]);
+    }
+    // Ranges that overlap are resolved in the same order as getSpans() for equal priorities.
+    ranges = new SpanRangeIndex(starts, ends, priorities);
+
+    spans = new ClickableSpan[count];
+    for (int i = 0; i < count; i++) {
+      spans[i] = foundSpans[ranges.order(i)];
+    }
+
+    rects = null;
+    rectSpanIndices = null;
+
+    // Get notified of any changes to the text so that this index can be marked as stale.
+    text.setSpan(this, 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+    stale = false;
+  }
+
+  private void detach() {
+    text.removeSpan(this);
+  }
+
+  /**
+   * Equivalent of reading the first item of {@code getSpans(offset, offset, ClickableSpan.class)}, except that
+   * spans of registered types with higher priorities are preferred.
+   *
+   * @return The ClickableSpan present at <var>offset</var> or null.
+   */
+  ClickableSpan spanAt(int offset) {
+    int index = ranges.indexAt(offset);
+    lastScanCount = ranges.lastScanCount();
+    return index != -1 ? spans[index] : null;
+  }
+
+  /**
+   * Number of spans examined by the last call to {@link #spanAt(int)}.
+   */
+  int lastScanCount() {
+    return lastScanCount;
+  }
+
+  /**
+   * Finds the span whose rectangles contain (<var>x</var>, <var>y</var>). If no span contains the point, the span
+   * with the nearest rectangle within <var>touchTargetExpansion</var> is returned instead.
+   *
+   * @return The ClickableSpan present at the point or null.
+   */
+  ClickableSpan spanAtPoint(float x, float y, float touchTargetExpansion) {
+    if (rects == null) {
+      // Callers obtain() this index for their current Layout, so it can't have been collected yet.
+      computeRects(layoutRef.get());
+    }
+
+    int found = -1;
+    int foundRect = -1;
+    int nearest = -1;
+    int nearestRect = -1;
+    float nearestDistance = Float.MAX_VALUE;
+    for (int i = 0; i < rectSpanIndices.length; i++) {
+      float left = rects[i * 4];
+      float top = rects[i * 4 + 1];
+      float right = rects[i * 4 + 2];
+      float bottom = rects[i * 4 + 3];
+      int spanIndex = rectSpanIndices[i];
+
+      if (x >= left && x < right && y >= top && y < bottom) {
+        if (found == -1 || ranges.ranksHigher(spanIndex, found)) {
+          found = spanIndex;
+          foundRect = i;
+        }
+      } else if (touchTargetExpansion > 0 && found == -1) {
+        float dx = Math.max(0, Math.max(left - x, x - right));
+        float dy = Math.max(0, Math.max(top - y, y - bottom));
+        float distance = Math.max(dx, dy);
+        if (distance <= touchTargetExpansion && distance < nearestDistance) {
+          nearest = spanIndex;
+          nearestRect = i;
+          nearestDistance = distance;
+        }
+      }
+    }
+    lastScanCount = rectSpanIndices.length;
+    lastFoundRect = found != -1 ? foundRect : nearestRect;
+
+    int spanIndex = found != -1 ? found : nearest;
+    return spanIndex != -1 ? spans[spanIndex] : null;
+  }
+
+  /**
+   * Records the rectangle in which the last call to {@link #spanAtPoint(float, float, float)} found <var>span</var>
+   * as the bounds of <var>tracker</var>'s link. Unlike measuring the span's location in the text's layout, this
+   * does not allocate.
+   *
+   * @return False if the last call did not return <var>span</var>, in which case nothing is recorded.
+   */
+  boolean recordLastFoundBounds(ClickableSpan span, LinkGestureTracker tracker) {
+    if (lastFoundRect == -1 || spans[rectSpanIndices[lastFoundRect]] != span) {
+      return false;
+    }
+    int i = lastFoundRect;
+    tracker.setLinkBounds(rects[i * 4], rects[i * 4 + 1], rects[i * 4 + 2], rects[i * 4 + 3]);
+    return true;
+  }
+
+  /**
+   * Number of indexed spans. Spans are numbered in the order of their start offsets.
+   */
+  int size() {
+    return spans.length;
+  }
+
+  ClickableSpan spanAtIndex(int spanIndex) {
+    return spans[spanIndex];
+  }
+
+  int startAtIndex(int spanIndex) {
+    return ranges.start(spanIndex);
+  }
+
+  int endAtIndex(int spanIndex) {
+    return ranges.end(spanIndex);
+  }
+
+  /**
+   * @return Position of <var>span</var> in the order of start offsets, or -1 if it isn't indexed.
+   */
+  int indexOf(ClickableSpan span, int spanStart) {
+    for (int i = ranges.lastIndexStartingAtOrBefore(spanStart); i >= 0 && ranges.start(i) == spanStart; i--) {
+      if (spans[i] == span) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return Position of the first span that starts at or after <var>offset</var>. Equal to {@link #size()} if there's none.
+   */
+  int firstIndexStartingAtOrAfter(int offset) {
+    return ranges.firstIndexStartingAtOrAfter(offset);
+  }
+
+  /**
+   * @return Position of the last span that starts before <var>offset</var>, or -1 if there's none.
+   */
+  int lastIndexStartingBefore(int offset) {
+    return ranges.lastIndexStartingBefore(offset);
+  }
+
+  private void computeRects(Layout layout) {
+    int rectCount = 0;
+    for (int i = 0; i < spans.length; i++) {
+      rectCount += lastLineOf(layout, i) - layout.getLineForOffset(ranges.start(i)) + 1;
+    }
+
+    rects = new float[rectCount * 4];
+    rectSpanIndices = new int[rectCount];
+    int rectIndex = 0;
+    for (int i = 0; i < spans.length; i++) {
+      int firstLine = layout.getLineForOffset(ranges.start(i));
+      int lastLine = lastLineOf(layout, i);
+      for (int line = firstLine; line <= lastLine; line++) {
+        float lineLeft = layout.getLineLeft(line);
+        float lineRight = lineLeft + layout.getLineWidth(line);
+        float left = line == firstLine ? layout.getPrimaryHorizontal(ranges.start(i)) : lineLeft;
+        float right = line == lastLine && ranges.end(i) < layout.getLineEnd(line) ? layout.getPrimaryHorizontal(ranges.end(i)) : lineRight;
+
+        rects[rectIndex * 4] = Math.min(left, right);
+        rects[rectIndex * 4 + 1] = layout.getLineTop(line);
+        rects[rectIndex * 4 + 2] = Math.max(left, right);
+        rects[rectIndex * 4 + 3] = layout.getLineBottom(line);
+        rectSpanIndices[rectIndex] = i;
+        rectIndex++;
+      }
+    }
+  }
+
+  /**
+   * A span ending exactly at the start of a line does not occupy that line.
+   */
+  private int lastLineOf(Layout layout, int spanIndex) {
+    int firstLine = layout.getLineForOffset(ranges.start(spanIndex));
+    int lastLine = layout.getLineForOffset(ranges.end(spanIndex));
+    if (lastLine > firstLine && ranges.end(spanIndex) == layout.getLineStart(lastLine)) {
+      lastLine--;
+    }
+    return lastLine;
+  }
+
+  @Override
+  public void onSpanAdded(Spannable text, Object what, int start, int end) {
+    if (what instanceof ClickableSpan) {
+      stale = true;
+    }
+  }
+
+  @Override
+  public void onSpanRemoved(Spannable text, Object what, int start, int end) {
+    if (what instanceof ClickableSpan) {
+      stale = true;
+    }
+  }
+
+  @Override
+  public void onSpanChanged(Spannable text, Object what, int oldStart, int oldEnd, int newStart, int newEnd) {
+    if (what instanceof ClickableSpan) {
+      stale = true;
+    }
+  }
+
+  @Override
+  public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+  }
+
+  @Override
+  public void onTextChanged(CharSequence s, int start, int before, int count) {
+    // Span offsets have shifted.
+    stale = true;
+  }
+
+  @Override
+  public void afterTextChanged(Editable s) {
+  }
+}
@@ -0,0 +1,86 @@
+package me.saket.bettermovementmethod;
+
+import android.text.style.ClickableSpan;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Span types registered using {@link BetterLinkMovementMethod#registerSpanType}. Each span class is resolved to
+ * its registered type (or that of its nearest registered superclass) once and the result is remembered, so
+ * resolving a span's type costs a single map lookup.
+ */
+final class SpanTypeRegistry {
+
+  static final SpanType DEFAULT_TYPE = new SpanType(0, null, null);
+
+  private final Map<Class<?>, SpanType> registeredTypes = new HashMap<>();
+  private final Map<Class<?>, SpanType> resolvedTypes = new HashMap<>();
+  // Incremented on every registration so that lookup tables built using older registrations can be invalidated.
+  private int version;
+
+  static final class SpanType {
+    final int priority;
+    final BetterLinkMovementMethod.SpanTextExtractor<ClickableSpan> textExtractor;
+    final BetterLinkMovementMethod.OnLinkClickListener clickListener;
+
+    SpanType(int priority, BetterLinkMovementMethod.SpanTextExtractor<ClickableSpan> textExtractor, BetterLinkMovementMethod.OnLinkClickListener clickListener) {
+      this.priority = priority;
+      this.textExtractor = textExtractor;
+      this.clickListener = clickListener;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  <T extends ClickableSpan> void register(Class<T> spanClass, int priority, BetterLinkMovementMethod.SpanTextExtractor<? super T> textExtractor,
+      BetterLinkMovementMethod.OnLinkClickListener clickListener) {
+    // The extractor will only ever receive instances of spanClass.
+    SpanType type = new SpanType(priority, (BetterLinkMovementMethod.SpanTextExtractor<ClickableSpan>) textExtractor, clickListener);
+    registeredTypes.put(spanClass, type);
+    resolvedTypes.clear();
+    version++;
+  }
+
+  int version() {
+    return version;
+  }
+
+  SpanType resolve(ClickableSpan span) {
+    if (registeredTypes.isEmpty()) {
+      return DEFAULT_TYPE;
+    }
+
+    Class<?> spanClass = span.getClass();
+    SpanType type = resolvedTypes.get(spanClass);
+    if (type == null) {
+      for (Class<?> c = spanClass; c != null && type == null; c = c.getSuperclass()) {
+        type = registeredTypes.get(c);
+      }
+      if (type == null) {
+        type = DEFAULT_TYPE;
+      }
+      resolvedTypes.put(spanClass, type);
+    }
+    return type;
+  }
+
+  int priorityOf(ClickableSpan span) {
+    return resolve(span).priority;
+  }
+
+  /**
+   * @return The span with the highest priority, or the first one among spans with equal priorities.
+   */
+  ClickableSpan highestPriority(ClickableSpan[] spans) {
+    ClickableSpan found = null;
+    int foundPriority = Integer.MIN_VALUE;
+    for (ClickableSpan span : spans) {
+      int priority = priorityOf(span);
+      if (found == null || priority > foundPriority) {
+        found = span;
+        foundPriority = priority;
+      }
+    }
+    return found;
+  }
+}
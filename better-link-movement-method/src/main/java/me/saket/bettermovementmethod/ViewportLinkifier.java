@@ -0,0 +1,242 @@
+package me.saket.bettermovementmethod;
+
+import android.text.Editable;
+import android.text.Layout;
+import android.text.NoCopySpan;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.text.style.URLSpan;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects links only in the visible lines of a scrollable TextView (plus a few lines above and below for
+ * prefetching). Links are detected in newly visible lines as the TextView scrolls and removed from lines that
+ * have moved out of this window, so the cost of linkification scales with the viewport instead of the text.
+ * <p>
+ * Links spanning multiple words (like map addresses) may be missed at the edges of the window because
+ * the window is only extended to the nearest whitespace.
+ * <p>
+ * Editable texts are observed using a {@link TextWatcher} span. Edits shift the window, and the words touched by
+ * an edit are detected again along with any links they overlap, like {@link IncrementalLinkifier} does. The span
+ * is a {@link NoCopySpan} because it refers to this TextView's window.
+ */
+final class ViewportLinkifier implements ViewTreeObserver.OnPreDrawListener, View.OnAttachStateChangeListener, TextWatcher, NoCopySpan {
+
+  private static final int PREFETCH_LINE_COUNT = 20;
+
+  private final TextView textView;
+  private final int linkifyMask;
+  private final List<URLSpan> addedSpans = new ArrayList<>();
+
+  private Spannable linkifiedText;
+  private Layout linkifiedLayout;
+  private int linkifiedScrollY = -1;
+  private int linkifiedHeight = -1;
+
+  // Text range [coveredStart, coveredEnd) where links have been detected.
+  // Both offsets always lie on whitespace or at the text's bounds.
+  private int coveredStart;
+  private int coveredEnd;
+  // Region [editStart, editEnd) of the text that was changed by the ongoing edit and has to be detected again,
+  // or -1 if the edit did not touch the covered range.
+  private int editStart = -1;
+  private int editEnd = -1;
+
+  static void attach(TextView textView, int linkifyMask) {
+    ViewportLinkifier previous = (ViewportLinkifier) textView.getTag(R.id.bettermovementmethod_viewport_linkifier);
+    if (previous != null) {
+      previous.detach();
+    }
+
+    ViewportLinkifier linkifier = new ViewportLinkifier(textView, linkifyMask);
+    textView.setTag(R.id.bettermovementmethod_viewport_linkifier, linkifier);
+    textView.addOnAttachStateChangeListener(linkifier);
+    if (textView.getWindowToken() != null) {
+      textView.getViewTreeObserver().addOnPreDrawListener(linkifier);
+    }
+  }
+
+  private ViewportLinkifier(TextView textView, int linkifyMask) {
+    this.textView = textView;
+    this.linkifyMask = linkifyMask;
+  }
+
+  private void detach() {
+    textView.removeOnAttachStateChangeListener(this);
+    textView.getViewTreeObserver().removeOnPreDrawListener(this);
+    if (linkifiedText != null) {
+      linkifiedText.removeSpan(this);
+    }
+  }
+
+  @Override
+  public void onViewAttachedToWindow(View v) {
+    textView.getViewTreeObserver().addOnPreDrawListener(this);
+  }
+
+  @Override
+  public void onViewDetachedFromWindow(View v) {
+    textView.getViewTreeObserver().removeOnPreDrawListener(this);
+  }
+
+  @Override
+  public boolean onPreDraw() {
+    Layout layout = textView.getLayout();
+    if (layout != null && textView.getText() instanceof Spannable) {
+      updateWindow(layout, (Spannable) textView.getText());
+    }
+    return true;
+  }
+
+  private void updateWindow(Layout layout, Spannable text) {
+    int scrollY = textView.getScrollY();
+    int height = textView.getHeight();
+    if (text == linkifiedText && layout == linkifiedLayout && scrollY == linkifiedScrollY && height == linkifiedHeight) {
+      return;
+    }
+
+    if (text != linkifiedText) {
+      // The text was replaced. Spans added to the old text don't matter anymore.
+      if (linkifiedText != null) {
+        linkifiedText.removeSpan(this);
+      }
+      Linkifier.removeLinks(text);
+      addedSpans.clear();
+      coveredStart = 0;
+      coveredEnd = 0;
+      if (text instanceof Editable) {
+        text.setSpan(this, 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+      }
+    }
+    linkifiedText = text;
+    linkifiedLayout = layout;
+    linkifiedScrollY = scrollY;
+    linkifiedHeight = height;
+
+    int visibleTop = scrollY;
+    int visibleBottom = scrollY + height - textView.getTotalPaddingTop() - textView.getTotalPaddingBottom();
+    int firstLine = Math.max(0, layout.getLineForVertical(visibleTop) - PREFETCH_LINE_COUNT);
+    int lastLine = Math.min(layout.getLineCount() - 1, layout.getLineForVertical(visibleBottom) + PREFETCH_LINE_COUNT);
+    int windowStart = previousWhitespace(text, layout.getLineStart(firstLine));
+    int windowEnd = nextWhitespace(text, layout.getLineEnd(lastLine));
+
+    evictLinksOutside(text, windowStart, windowEnd);
+
+    if (windowEnd <= coveredStart || windowStart >= coveredEnd) {
+      // No overlap with the previous window.
+      detectLinks(text, windowStart, windowEnd);
+    } else {
+      if (windowStart < coveredStart) {
+        detectLinks(text, windowStart, coveredStart);
+      }
+      if (windowEnd > coveredEnd) {
+        detectLinks(text, coveredEnd, windowEnd);
+      }
+    }
+    coveredStart = windowStart;
+    coveredEnd = windowEnd;
+  }
+
+  private void evictLinksOutside(Spannable text, int windowStart, int windowEnd) {
+    for (int i = addedSpans.size() - 1; i >= 0; i--) {
+      URLSpan span = addedSpans.get(i);
+      if (text.getSpanEnd(span) <= windowStart || text.getSpanStart(span) >= windowEnd) {
+        text.removeSpan(span);
+        addedSpans.remove(i);
+      }
+    }
+  }
+
+  private void detectLinks(Spannable text, int start, int end) {
+    LinkRanges links = Linkifier.detectLinks(text.subSequence(start, end), linkifyMask);
+    for (int i = 0; i < links.size(); i++) {
+      addedSpans.add(Linkifier.addLink(text, links.url(i), links.type(i), start + links.start(i), start + links.end(i)));
+    }
+  }
+
+  @Override
+  public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+  }
+
+  @Override
+  public void onTextChanged(CharSequence s, int start, int before, int count) {
+    int oldEditEnd = start + before;
+    int delta = count - before;
+
+    // The characters just outside the covered range are whitespace, so edits that don't reach them leave the
+    // covered words intact and only shift them.
+    if (oldEditEnd < coveredStart) {
+      coveredStart += delta;
+      coveredEnd += delta;
+    } else if (start <= coveredEnd) {
+      coveredStart = Math.min(coveredStart, start);
+      coveredEnd = coveredEnd >= oldEditEnd ? coveredEnd + delta : start + count;
+      editStart = start;
+      editEnd = start + count;
+    }
+
+    // Lines may have moved in or out of the window.
+    linkifiedScrollY = -1;
+  }
+
+  @Override
+  public void afterTextChanged(Editable text) {
+    if (editStart == -1 || text != linkifiedText) {
+      return;
+    }
+    int regionStart = previousWhitespace(text, Math.min(editStart, text.length()));
+    int regionEnd = nextWhitespace(text, Math.min(editEnd, text.length()));
+    editStart = -1;
+    editEnd = -1;
+
+    // Links that overlap the region are detected again, like Linkify would when linkifying the entire text.
+    boolean removedLinks = false;
+    for (int i = addedSpans.size() - 1; i >= 0; i--) {
+      URLSpan span = addedSpans.get(i);
+      int spanStart = text.getSpanStart(span);
+      int spanEnd = text.getSpanEnd(span);
+      if (spanStart == -1) {
+        // Removed along with the text it covered.
+        addedSpans.remove(i);
+      } else if (spanStart <= regionEnd && spanEnd >= regionStart) {
+        regionStart = Math.min(regionStart, spanStart);
+        regionEnd = Math.max(regionEnd, spanEnd);
+        text.removeSpan(span);
+        addedSpans.remove(i);
+        removedLinks = true;
+      }
+    }
+    if (removedLinks) {
+      regionStart = previousWhitespace(text, regionStart);
+      regionEnd = nextWhitespace(text, regionEnd);
+    }
+
+    // The region lies on whitespace and overlaps the covered range, so their union does too.
+    coveredStart = Math.min(coveredStart, regionStart);
+    coveredEnd = Math.max(coveredEnd, regionEnd);
+    if (regionStart < regionEnd) {
+      detectLinks(text, regionStart, regionEnd);
+    }
+  }
+
+  private static int previousWhitespace(CharSequence text, int offset) {
+    while (offset > 0 && !Character.isWhitespace(text.charAt(offset - 1))) {
+      offset--;
+    }
+    return offset;
+  }
+
+  private static int nextWhitespace(CharSequence text, int offset) {
+    int length = text.length();
+    while (offset < length && !Character.isWhitespace(text.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+}
@@ -12,6 +12,7 @@ import android.widget.Toast;
 
 import me.saket.bettermovementmethod.BetterLinkMovementMethod;
 import me.saket.bettermovementmethod.BetterLinkMovementMethod.OnLinkLongClickListener;
+import me.saket.bettermovementmethod.LinkInfo;
 
 public class MainActivity extends Activity {
 
@@ -22,13 +23,13 @@ public class MainActivity extends Activity {
 
     // Add links to all TextViews.
     BetterLinkMovementMethod.linkify(Linkify.ALL, this)
-        .setOnLinkClickListener(urlClickListener)
+        .setOnLinkInfoClickListener(urlClickListener)
         .setOnLinkLongClickListener(longClickListener);
 
     TextView wayneTowerIntroView = findViewById(R.id.wayne_tower_intro);
     wayneTowerIntroView.setText(Html.fromHtml(getString(R.string.bettermovementmethod_dummy_text_long)));
     BetterLinkMovementMethod.linkifyHtml(wayneTowerIntroView)
-        .setOnLinkClickListener(urlClickListener)
+        .setOnLinkInfoClickListener(urlClickListener)
         .setOnLinkLongClickListener(longClickListener);
 
     // https://github.com/Saketme/Better-Link-Movement-Method/issues/8
@@ -38,21 +39,26 @@ public class MainActivity extends Activity {
     introductionText.setSpan(new BackgroundColorSpan(getColor(R.color.wayneTower)), start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
   }
 
-  private final BetterLinkMovementMethod.OnLinkClickListener urlClickListener = (view, url) -> {
-    if (isPhoneNumber(url)) {
-      PhoneLinkPopupMenu phonePopupMenu = new PhoneLinkPopupMenu(this, view, url);
-      phonePopupMenu.show();
-
-    } else if (isEmailAddress(url)) {
-      EmailLinkPopupMenu emailPopupMenu = new EmailLinkPopupMenu(this, view);
-      emailPopupMenu.show();
-
-    } else if (isMapAddress(url)) {
-      MapLinkPopupMenu mapPopupMenu = new MapLinkPopupMenu(this, view);
-      mapPopupMenu.show();
-
-    } else {
-      Toast.makeText(this, url, Toast.LENGTH_SHORT).show();
+  private final BetterLinkMovementMethod.OnLinkInfoClickListener urlClickListener = (view, link) -> {
+    switch (link.type()) {
+      case LinkInfo.TYPE_PHONE_NUMBER:
+        PhoneLinkPopupMenu phonePopupMenu = new PhoneLinkPopupMenu(this, view, link.url());
+        phonePopupMenu.show();
+        break;
+
+      case LinkInfo.TYPE_EMAIL_ADDRESS:
+        EmailLinkPopupMenu emailPopupMenu = new EmailLinkPopupMenu(this, view);
+        emailPopupMenu.show();
+        break;
+
+      default:
+        if (isMapAddress(link)) {
+          MapLinkPopupMenu mapPopupMenu = new MapLinkPopupMenu(this, view);
+          mapPopupMenu.show();
+        } else {
+          Toast.makeText(this, link.url(), Toast.LENGTH_SHORT).show();
+        }
+        break;
     }
 
     return true;
@@ -63,15 +69,7 @@ public class MainActivity extends Activity {
     return true;
   };
 
-  private boolean isPhoneNumber(String url) {
-    return url.startsWith("tel:");
-  }
-
-  private boolean isEmailAddress(String url) {
-    return url.contains("@");
-  }
-
-  private boolean isMapAddress(String url) {
-    return url.contains("goo.gl/maps");
+  private boolean isMapAddress(LinkInfo link) {
+    return link.type() == LinkInfo.TYPE_MAP_ADDRESS || ("goo.gl".equals(link.host()) && link.url().contains("goo.gl/maps"));
   }
 }